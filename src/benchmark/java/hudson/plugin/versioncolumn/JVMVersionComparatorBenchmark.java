@@ -0,0 +1,58 @@
+package hudson.plugin.versioncolumn;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the evaluation of a single agent against the master, for each {@link JVMVersionComparator.ComparisonMode}.
+ * <p>The master bytecode level is a constant here, see {@link MasterBytecodeLevelBenchmark} for its cost.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JVMVersionComparatorBenchmark {
+
+    private static final String MASTER_VERSION = "1.8.0_181";
+
+    private static final JVMVersionComparator.MasterBytecodeMajorVersionNumberGetter MASTER_BYTECODE_LEVEL =
+            new JVMVersionComparator.MasterBytecodeMajorVersionNumberGetter() {
+                @Override
+                public int get() {
+                    return JVMConstants.JAVA_8;
+                }
+            };
+
+    @Param({"RUNTIME_GREATER_OR_EQUAL_MASTER_BYTECODE", "RUNTIME_GREATER_OR_EQUAL_PLUGINS_BYTECODE",
+            "MAJOR_MINOR_MATCH", "EXACT_MATCH"})
+    public String modeName;
+
+    private JVMVersionComparator.ComparisonMode mode;
+
+    @Param({"1.8.0_66", "11.0.2", "17.0.9+9"})
+    public String agentVersion;
+
+    @Setup
+    public void setUp() {
+        // JMH generated code lives in another package, and cannot see the package-private enum
+        mode = JVMVersionComparator.ComparisonMode.valueOf(modeName);
+    }
+
+    @Benchmark
+    public boolean comparator() {
+        return new JVMVersionComparator(MASTER_VERSION, agentVersion, mode, MASTER_BYTECODE_LEVEL).isCompatible();
+    }
+}
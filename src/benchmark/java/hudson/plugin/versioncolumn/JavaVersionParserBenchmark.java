@@ -0,0 +1,57 @@
+package hudson.plugin.versioncolumn;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares {@link JavaVersionParser} with the regular expression it replaced, and measures
+ * {@link JVMVersionComparator#computeMajorMinor(String)} which is built on it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JavaVersionParserBenchmark {
+
+    private static final Pattern MAJOR_MINOR_PATTERN = Pattern.compile("(\\d+\\.\\d+).*");
+
+    @Param({"1.8.0_66", "11", "17.0.9+9", "21-ea"})
+    public String version;
+
+    @Benchmark
+    public String regex() {
+        final Matcher matcher = MAJOR_MINOR_PATTERN.matcher(version);
+        try {
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException(version + " is not a supported JVM version pattern");
+            }
+            return matcher.group(1);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public long parser() {
+        return JavaVersionParser.parse(version);
+    }
+
+    @Benchmark
+    public String computeMajorMinor() {
+        return JVMVersionComparator.computeMajorMinor(version);
+    }
+}
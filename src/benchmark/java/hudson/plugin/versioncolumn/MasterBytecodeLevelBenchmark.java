@@ -0,0 +1,39 @@
+package hudson.plugin.versioncolumn;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link JVMVersionComparator.MasterBytecodeMajorVersionNumberGetter#get()}: cold, when the bytecode of
+ * the Jenkins class has to be read, and warm, when {@link MasterBytecodeLevel} already holds it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MasterBytecodeLevelBenchmark {
+
+    private final MasterBytecodeLevel warm =
+            new MasterBytecodeLevel(new JVMVersionComparator.MasterBytecodeMajorVersionNumberGetter());
+
+    @Benchmark
+    public int cold() {
+        return new JVMVersionComparator.MasterBytecodeMajorVersionNumberGetter().get();
+    }
+
+    @Benchmark
+    public int warm() {
+        return warm.get();
+    }
+}
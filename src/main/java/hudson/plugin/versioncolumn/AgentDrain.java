@@ -0,0 +1,173 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.Queue;
+import hudson.model.queue.CauseOfBlockage;
+import hudson.model.queue.QueueTaskDispatcher;
+import hudson.remoting.VirtualChannel;
+import jenkins.util.Timer;
+
+import javax.annotation.CheckForNull;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Drains incompatible agents instead of taking them offline: they finish their running builds but do not take new
+ * ones, and are optionally taken offline once idle, see {@link AgentVersionsMonitorDescriptor#ENFORCEMENT}.
+ * <p>Agents stop draining when they disconnect, or when the monitor which found them incompatible does not anymore.</p>
+ */
+@Extension
+public class AgentDrain extends QueueTaskDispatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(AgentDrain.class.getName());
+
+    /**
+     * How often draining agents are checked for being idle, in milliseconds.
+     */
+    static final long IDLE_CHECK_PERIOD = Long.getLong(AgentDrain.class.getName() + ".idleCheckPeriod", TimeUnit.SECONDS.toMillis(30));
+
+    private static final ConcurrentMap<Computer, Drain> DRAINING = new ConcurrentHashMap<>();
+
+    private static final AtomicBoolean SCHEDULED = new AtomicBoolean();
+
+    @Override
+    public CauseOfBlockage canTake(Node node, Queue.BuildableItem item) {
+        final Computer c = node.toComputer();
+        if (c != null && isDraining(c)) {
+            return CauseOfBlockage.fromMessage(Messages._AgentDrain_Blocked(node.getDisplayName()));
+        }
+        return null;
+    }
+
+    /**
+     * Stops giving new builds to the agent.
+     *
+     * @param monitor  the class name of the descriptor of the monitor draining the agent.
+     * @param whenIdle run once the agent has no build running anymore, if not {@code null}.
+     */
+    static void start(Computer c, String monitor, @CheckForNull Runnable whenIdle) {
+        final VirtualChannel channel = c.getChannel();
+        if (channel == null) {
+            return;
+        }
+        DRAINING.put(c, new Drain(channel, monitor, whenIdle));
+        if (whenIdle != null) {
+            schedule();
+        }
+    }
+
+    /**
+     * @return true if the agent does not take new builds anymore. Agents which reconnected since do not drain.
+     */
+    static boolean isDraining(Computer c) {
+        final Drain drain = DRAINING.get(c);
+        return drain != null && drain.channel == c.getChannel();
+    }
+
+    /**
+     * @return true if the agent is draining because of that monitor.
+     */
+    static boolean isDrainedBy(Computer c, String monitor) {
+        final Drain drain = DRAINING.get(c);
+        return drain != null && drain.channel == c.getChannel() && drain.monitor.equals(monitor);
+    }
+
+    /**
+     * Gives new builds to the agent again, if it is draining because of that monitor.
+     *
+     * @return true if it was.
+     */
+    static boolean stop(Computer c, String monitor) {
+        final Drain drain = DRAINING.get(c);
+        return drain != null && drain.monitor.equals(monitor) && DRAINING.remove(c, drain);
+    }
+
+    static void forget(Computer c) {
+        DRAINING.remove(c);
+    }
+
+    private static void schedule() {
+        if (SCHEDULED.compareAndSet(false, true)) {
+            Timer.get().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    checkIdle();
+                }
+            }, IDLE_CHECK_PERIOD, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void checkIdle() {
+        try {
+            final Iterator<Map.Entry<Computer, Drain>> it = DRAINING.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<Computer, Drain> entry = it.next();
+                final Computer c = entry.getKey();
+                final Drain drain = entry.getValue();
+                if (drain.channel != c.getChannel()) {
+                    it.remove();
+                } else if (drain.whenIdle != null && c.isIdle()) {
+                    it.remove();
+                    try {
+                        drain.whenIdle.run();
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Failed to take " + c.getName() + " offline once drained", e);
+                    }
+                }
+            }
+        } finally {
+            SCHEDULED.set(false);
+            // Including the agents which started draining meanwhile
+            for (Drain drain : DRAINING.values()) {
+                if (drain.whenIdle != null) {
+                    schedule();
+                    break;
+                }
+            }
+        }
+    }
+
+    private static final class Drain {
+        private final VirtualChannel channel;
+        private final String monitor;
+        @CheckForNull
+        private final Runnable whenIdle;
+
+        Drain(VirtualChannel channel, String monitor, @CheckForNull Runnable whenIdle) {
+            this.channel = channel;
+            this.monitor = monitor;
+            this.whenIdle = whenIdle;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+import javax.annotation.CheckForNull;
+import java.io.Serializable;
+
+/**
+ * Versions reported by an agent in a single round trip, see {@link AgentVersionsProbe}.
+ */
+final class AgentVersions implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @CheckForNull
+    private final String remotingVersion;
+    @CheckForNull
+    private final String javaVersion;
+    private final int bytecodeLevel;
+
+    AgentVersions(@CheckForNull String remotingVersion, @CheckForNull String javaVersion, int bytecodeLevel) {
+        this.remotingVersion = remotingVersion;
+        this.javaVersion = javaVersion;
+        this.bytecodeLevel = bytecodeLevel;
+    }
+
+    /**
+     * @return the version of the Remoting library run by the agent.
+     */
+    @CheckForNull
+    String getRemotingVersion() {
+        return remotingVersion;
+    }
+
+    /**
+     * @return the {@code java.version} of the agent JVM.
+     */
+    @CheckForNull
+    String getJavaVersion() {
+        return javaVersion;
+    }
+
+    /**
+     * @return the highest class file major version the agent JVM can load, from its {@code java.class.version}, 0 if
+     * unknown.
+     */
+    int getBytecodeLevel() {
+        return bytecodeLevel;
+    }
+
+    /**
+     * @return the major part of a {@code java.class.version} like {@code 52.0}, 0 if there is none.
+     */
+    static int bytecodeLevel(@CheckForNull String classVersion) {
+        if (classVersion == null) {
+            return 0;
+        }
+        int level = 0;
+        for (int i = 0; i < classVersion.length() && i < 5; i++) {
+            char c = classVersion.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            level = level * 10 + c - '0';
+        }
+        return level;
+    }
+
+    @Override
+    public String toString() {
+        return "remoting=" + remotingVersion + ", java=" + javaVersion + ", bytecode=" + bytecodeLevel;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.slaves.ComputerListener;
+import hudson.slaves.OfflineCause;
+
+/**
+ * Probes the versions of agents as soon as they connect, before the already known agents, for every monitor of this
+ * plugin, so that an agent reconnecting incompatible is enforced and shown right away. The monitors share a single
+ * call. Forgets the versions, and whether the agent was draining, when it disconnects.
+ */
+@Extension
+public class AgentVersionsListener extends ComputerListener {
+
+    @Override
+    public void onOnline(Computer c, TaskListener listener) {
+        for (AgentVersionsMonitorDescriptor<?> descriptor : ExtensionList.lookup(AgentVersionsMonitorDescriptor.class)) {
+            descriptor.connected(c);
+        }
+    }
+
+    @Override
+    public void onOffline(Computer c, OfflineCause cause) {
+        AgentVersionsProbe.forget(c);
+        AgentDrain.forget(c);
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+import com.google.common.annotations.VisibleForTesting;
+import hudson.ExtensionList;
+import hudson.model.Computer;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.node_monitors.AbstractNodeMonitorDescriptor;
+import hudson.remoting.VirtualChannel;
+import hudson.slaves.OfflineCause;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import org.jvnet.localizer.Localizable;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Monitors one of the values of {@link AgentVersions}.
+ * <p>All agents are probed in parallel, each with its own {@link AgentVersionsProbe#TIMEOUT}, and each value is
+ * recorded as soon as it is received: a slow agent only delays its own row. Probes are shared with the other
+ * monitors of this plugin, so that a monitoring cycle costs a single round trip per agent.</p>
+ * <p>Agents which have to be called during a monitoring cycle are not all called at its start: each one is called
+ * after its own offset within the {@link #INTERVAL}, derived from its name, plus some {@link #JITTER}. Until then,
+ * the cycle reports their last known value. Agents which do not answer are skipped, see
+ * {@link ProbeCircuitBreaker}, which the column shows.</p>
+ *
+ * @param <T> the monitored value.
+ */
+abstract class AgentVersionsMonitorDescriptor<T> extends AbstractNodeMonitorDescriptor<T> {
+
+    private static final Logger LOGGER = Logger.getLogger(AgentVersionsMonitorDescriptor.class.getName());
+
+    /**
+     * Monitoring interval, in milliseconds.
+     */
+    static final long INTERVAL = Long.getLong(AgentVersionsMonitorDescriptor.class.getName() + ".interval", TimeUnit.HOURS.toMillis(1));
+
+    /**
+     * Maximum random delay added to the offset of each agent, in milliseconds.
+     */
+    static final long JITTER = Long.getLong(AgentVersionsMonitorDescriptor.class.getName() + ".jitter", TimeUnit.MINUTES.toMillis(1));
+
+    /**
+     * What happens to incompatible agents.
+     */
+    static final Enforcement ENFORCEMENT = Enforcement.parse(
+            System.getProperty(AgentVersionsMonitorDescriptor.class.getName() + ".enforcement"));
+
+    enum Enforcement {
+        /**
+         * Agents are taken offline: their running builds complete, but they look unavailable right away.
+         */
+        OFFLINE,
+        /**
+         * Agents stay online and complete their running builds, but do not take new ones, see {@link AgentDrain}.
+         */
+        DRAIN,
+        /**
+         * Like {@link #DRAIN}, then agents are taken offline and disconnected once idle.
+         */
+        DRAIN_AND_DISCONNECT;
+
+        static Enforcement parse(@CheckForNull String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return OFFLINE;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ENGLISH).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                LOGGER.log(Level.WARNING, "Unknown enforcement ''{0}'', taking incompatible agents offline", value);
+                return OFFLINE;
+            }
+        }
+    }
+
+    /**
+     * Latest value received from each agent, which may be more recent than the last complete sweep.
+     */
+    private final ConcurrentMap<Computer, T> values = new ConcurrentHashMap<>();
+
+    /**
+     * Agents waiting for their offset to be called.
+     */
+    private final ConcurrentMap<Computer, Future<?>> delayed = new ConcurrentHashMap<>();
+
+    /**
+     * Offline transitions requested by this monitor, which may still wait for their turn.
+     */
+    private final ConcurrentMap<Computer, OfflineTransitions.Transition> requested = new ConcurrentHashMap<>();
+
+    AgentVersionsMonitorDescriptor() {
+        super(INTERVAL);
+    }
+
+    /**
+     * @return the monitored value among the versions of an agent.
+     */
+    @CheckForNull
+    protected abstract T extract(AgentVersions versions);
+
+    /**
+     * Called as soon as the value of an agent is received.
+     */
+    protected void received(Computer c, @CheckForNull T value) {
+    }
+
+    @Override
+    protected T monitor(Computer c) throws IOException, InterruptedException {
+        try {
+            return probe(c);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException("Failed to monitor " + c.getDisplayName() + " for " + getDisplayName(), e);
+        }
+    }
+
+    @Override
+    protected Map<Computer, T> monitor() throws InterruptedException {
+        final Map<Computer, Future<T>> probes = new HashMap<>();
+        final Map<Computer, T> data = new HashMap<>();
+        for (final Computer c : Jenkins.getInstance().getComputers()) {
+            if (AgentVersionsProbe.needsCall(c)) {
+                if (!ProbeCircuitBreaker.isOpen(c)) {
+                    delay(c);
+                }
+                data.put(c, values.get(c));
+                continue;
+            }
+            // Known, or being probed since the agent connected: no new call
+            probes.put(c, ProbeScheduler.INSTANCE.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return probe(c);
+                }
+            }, AgentVersionsProbe.known(c) == null));
+        }
+
+        // Each probe times out on its own, this only leaves them some room to wait for a free slot. Probes still
+        // waiting after that are not cancelled, and record their value when they complete.
+        final long end = System.currentTimeMillis() + 2 * AgentVersionsProbe.TIMEOUT;
+        for (Map.Entry<Computer, Future<T>> probe : probes.entrySet()) {
+            T value = null;
+            try {
+                value = probe.getValue().get(Math.max(0, end - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                LOGGER.log(Level.WARNING, "Failed to monitor " + probe.getKey().getDisplayName() + " for " + getDisplayName(), e);
+            }
+            data.put(probe.getKey(), value);
+        }
+        values.keySet().retainAll(data.keySet());
+        delayed.keySet().retainAll(data.keySet());
+        requested.keySet().retainAll(data.keySet());
+        AgentVersionsProbe.retain(data.keySet());
+        LOGGER.log(Level.FINE, "Monitored {0} agent(s) for {1}, probes: {2}, calls={3}, coalesced={4}, reused={5}, "
+                           + "master bytecode level: {6}, with plugins: {7}",
+                   new Object[]{data.size(), getDisplayName(), ProbeScheduler.INSTANCE,
+                                AgentVersionsProbe.getCallCount(), AgentVersionsProbe.getCoalescedCount(),
+                                AgentVersionsProbe.getReusedCount(),
+                                MasterBytecodeLevel.INSTANCE, MasterBytecodeLevel.WITH_PLUGINS});
+        return data;
+    }
+
+    /**
+     * Probes the agent which just connected before the already known agents, and records its value.
+     */
+    void connected(final Computer c) {
+        ProbeScheduler.INSTANCE.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                try {
+                    return probe(c);
+                } catch (IOException | ExecutionException | TimeoutException e) {
+                    LOGGER.log(Level.FINE, "Could not probe the versions of " + c.getName() + " for " + getDisplayName(), e);
+                    return null;
+                }
+            }
+        }, true);
+    }
+
+    /**
+     * Calls the agent once its offset is elapsed, unless it is already waiting for it.
+     */
+    private void delay(final Computer c) {
+        final Future<?> pending = delayed.get(c);
+        if (pending != null && !pending.isDone()) {
+            return;
+        }
+        final long delay = offset(c.getName(), INTERVAL, ThreadLocalRandom.current().nextLong(Math.max(1, JITTER)));
+        delayed.put(c, Timer.get().schedule(new Runnable() {
+            @Override
+            public void run() {
+                ProbeScheduler.INSTANCE.submit(new Callable<T>() {
+                    @Override
+                    public T call() throws Exception {
+                        try {
+                            return probe(c);
+                        } catch (IOException | ExecutionException | TimeoutException e) {
+                            LOGGER.log(Level.WARNING, "Failed to monitor " + c.getDisplayName() + " for " + getDisplayName(), e);
+                            return null;
+                        }
+                    }
+                }, false);
+            }
+        }, delay, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * @return the delay before calling an agent in a monitoring cycle: the same for every cycle, apart from the
+     * jitter, and spread across the interval by the agent name.
+     */
+    static long offset(String name, long interval, long jitter) {
+        if (interval <= 0) {
+            return 0;
+        }
+        final long phase = (mix(name.hashCode()) & 0x7fffffffL) % interval;
+        return (phase + jitter) % interval;
+    }
+
+    /**
+     * Spreads hash codes, which are close to each other for names like agent-1, agent-2...
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * @return the value of the agent, or {@code null} if it is not connected.
+     */
+    @CheckForNull
+    private T probe(Computer c) throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        final AgentVersions versions;
+        try {
+            versions = AgentVersionsProbe.get(c);
+        } catch (ProbeCircuitBreaker.OpenException e) {
+            return values.get(c);
+        }
+        if (versions == null) {
+            values.remove(c);
+            return null;
+        }
+        final T value = extract(versions);
+        if (value != null) {
+            values.put(c, value);
+        } else {
+            values.remove(c);
+        }
+        received(c, value);
+        return value;
+    }
+
+    /**
+     * @return why the agent is not probed anymore, or that it waits to be taken offline, {@code null} if neither.
+     */
+    @CheckForNull
+    public String getProbeStatus(Computer c) {
+        if (OfflineTransitions.INSTANCE.isPending(c)) {
+            return Messages.OfflineTransitions_Pending();
+        }
+        if (AgentDrain.isDraining(c)) {
+            return Messages.AgentDrain_Draining();
+        }
+        return ProbeCircuitBreaker.status(c);
+    }
+
+    /**
+     * Takes the agent offline, or drains it, per the {@link #ENFORCEMENT}, once its turn comes in
+     * {@link OfflineTransitions}, unless it went offline or reconnected meanwhile.
+     *
+     * @param description why the agent is incompatible.
+     * @param message     logged when the agent is taken offline.
+     * @return true if the agent will be taken offline or drained, false if it already is, or already waits for it.
+     */
+    protected boolean requestOffline(Computer c, Localizable description, String message) {
+        return requestOffline(c, description, message, ENFORCEMENT);
+    }
+
+    @VisibleForTesting
+    boolean requestOffline(final Computer c, Localizable description, final String message,
+                           final Enforcement enforcement) {
+        if (c.isOffline() || AgentDrain.isDraining(c)) {
+            return false;
+        }
+        final String monitor = getClass().getName();
+        final OfflineCause cause = new IncompatibleAgentOfflineCause(monitor, description);
+        final VirtualChannel channel = c.getChannel();
+        final Node node = c.getNode();
+        int executors = 0;
+        final Map<String, Integer> labelExecutors = new HashMap<>();
+        if (node != null) {
+            executors = node.getNumExecutors();
+            for (Label label : node.getAssignedLabels()) {
+                labelExecutors.put(label.getName(), label.getTotalExecutors());
+            }
+        }
+        final OfflineTransitions.Transition transition = new OfflineTransitions.Transition(executors, labelExecutors) {
+            @Override
+            boolean isStale() {
+                return c.getChannel() != channel || c.isOffline() || AgentDrain.isDraining(c);
+            }
+
+            @Override
+            void run() {
+                requested.remove(c, this);
+                switch (enforcement) {
+                    case DRAIN:
+                        LOGGER.log(Level.WARNING, "Draining {0}: {1}", new Object[]{c.getName(), cause});
+                        AgentDrain.start(c, monitor, null);
+                        break;
+                    case DRAIN_AND_DISCONNECT:
+                        LOGGER.log(Level.WARNING, "Draining {0} before disconnecting it: {1}", new Object[]{c.getName(), cause});
+                        AgentDrain.start(c, monitor, new Runnable() {
+                            @Override
+                            public void run() {
+                                LOGGER.warning(message);
+                                markOffline(c, cause);
+                                c.disconnect(cause);
+                            }
+                        });
+                        break;
+                    default:
+                        LOGGER.warning(message);
+                        markOffline(c, cause);
+                }
+            }
+        };
+        if (!OfflineTransitions.INSTANCE.submit(c, transition)) {
+            return false;
+        }
+        requested.put(c, transition);
+        return true;
+    }
+
+    /**
+     * Brings the agent back online, or stops draining it, if this monitor found it incompatible, once its turn comes
+     * in {@link OfflineTransitions}. If the agent still waits to be taken offline by this monitor, it is not anymore.
+     * Agents taken offline for any other reason are left alone.
+     *
+     * @return true if the agent will be brought back online or stop draining, or will not be taken offline anymore.
+     */
+    protected boolean requestOnline(final Computer c) {
+        final String monitor = getClass().getName();
+        final OfflineTransitions.Transition offline = requested.remove(c);
+        if (offline != null && OfflineTransitions.INSTANCE.cancel(c, offline)) {
+            LOGGER.log(Level.INFO, "{0} is compatible again, not taking it offline anymore", c.getName());
+            return true;
+        }
+        if (!IncompatibleAgentOfflineCause.isSetBy(c.getOfflineCause(), monitor) && !AgentDrain.isDrainedBy(c, monitor)) {
+            return false;
+        }
+        return OfflineTransitions.INSTANCE.submit(c, new OfflineTransitions.Transition() {
+            @Override
+            boolean isStale() {
+                return !IncompatibleAgentOfflineCause.isSetBy(c.getOfflineCause(), monitor)
+                        && !AgentDrain.isDrainedBy(c, monitor);
+            }
+
+            @Override
+            void run() {
+                boolean released = false;
+                if (AgentDrain.stop(c, monitor)) {
+                    LOGGER.log(Level.INFO, "{0} is compatible again, giving it new builds", c.getName());
+                    released = true;
+                }
+                if (IncompatibleAgentOfflineCause.isSetBy(c.getOfflineCause(), monitor) && markOnline(c)) {
+                    LOGGER.log(Level.INFO, "{0} is compatible again, bringing it back online", c.getName());
+                    released = true;
+                }
+                if (released) {
+                    // The other monitors did not act on the agent while it was offline or draining
+                    for (AgentVersionsMonitorDescriptor<?> other : ExtensionList.lookup(AgentVersionsMonitorDescriptor.class)) {
+                        if (other != AgentVersionsMonitorDescriptor.this) {
+                            other.recheck(c);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Checks the agent again against its known versions, without calling it.
+     */
+    void recheck(Computer c) {
+        final AgentVersions versions = AgentVersionsProbe.known(c);
+        if (versions != null) {
+            received(c, extract(versions));
+        }
+    }
+
+    @Override
+    public T get(Computer c) {
+        final T value = values.get(c);
+        return value != null ? value : super.get(c);
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+import com.google.common.annotations.VisibleForTesting;
+import hudson.model.Computer;
+import hudson.remoting.Channel;
+import hudson.remoting.ChannelProperty;
+import hudson.remoting.Launcher;
+import hudson.remoting.VirtualChannel;
+import jenkins.security.MasterToSlaveCallable;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects all the versions the monitors of this plugin need from an agent, in one round trip.
+ * <p>These versions cannot change while the agent stays connected, so the result of a probe is kept for the lifetime
+ * of the channel: the agent is probed when it connects, see {@link AgentVersionsListener}, and monitoring cycles then
+ * reuse that result. Probes still running, or which failed, are only shared for {@link #MAX_AGE}.</p>
+ * <p>Whatever asks for the versions of an agent, a monitoring cycle, its connection or a refresh of the nodes page,
+ * requests arriving while a probe of the same channel is running wait for that probe instead of calling the agent
+ * again. {@link #getCoalescedCount()} counts them.</p>
+ * <p>Once known, the versions are also recorded as a property of the channel, so that they are read from there
+ * without any remote call, even by a new instance of this plugin. Agents connected through a
+ * {@link VirtualChannel} which is not a {@link Channel} are always probed.</p>
+ * <p>Agents whose probes keep timing out are not called for a while, see {@link ProbeCircuitBreaker}.</p>
+ * <p>Only the small callable nested in this class is sent to the agents, this class itself stays on the master.</p>
+ */
+final class AgentVersionsProbe {
+
+    /**
+     * How long to wait for each agent to answer, in milliseconds.
+     */
+    static final long TIMEOUT = Long.getLong(AgentVersionsProbe.class.getName() + ".timeout", TimeUnit.SECONDS.toMillis(30));
+
+    /**
+     * How long a probe still running, or which failed, is shared, in milliseconds.
+     */
+    static final long MAX_AGE = Long.getLong(AgentVersionsProbe.class.getName() + ".maxAge", TimeUnit.SECONDS.toMillis(60));
+
+    /**
+     * Versions already known for a channel.
+     */
+    static final ChannelProperty<AgentVersions> VERSIONS = new ChannelProperty<>(AgentVersions.class, "Agent versions");
+
+    private static final ConcurrentMap<Object, Probe> PROBES = new ConcurrentHashMap<>();
+
+    /**
+     * Serializes the probes of each agent, so that concurrent requests share a single call. Kept while the agent
+     * exists, so that two requests never hold different locks for the same agent.
+     */
+    private static final ConcurrentMap<Object, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+    private static final AtomicLong CALLS = new AtomicLong();
+    private static final AtomicLong COALESCED = new AtomicLong();
+    private static final AtomicLong REUSED = new AtomicLong();
+
+    private AgentVersionsProbe() {
+    }
+
+    /**
+     * @return the call collecting the versions on the agent.
+     */
+    @VisibleForTesting
+    static MasterToSlaveCallable<AgentVersions, IOException> newCall() {
+        return new Versions();
+    }
+
+    /**
+     * @return the versions of the agent, or {@code null} if it is not connected.
+     */
+    @CheckForNull
+    static AgentVersions get(Computer c) throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        final VirtualChannel channel = c.getChannel();
+        if (channel == null) {
+            PROBES.remove(c);
+            return null;
+        }
+        return get(c, c.getDisplayName(), channel);
+    }
+
+    /**
+     * @param agent identifies the agent, usually its {@link Computer}.
+     * @param name  the name of the agent, for messages.
+     */
+    @CheckForNull
+    @VisibleForTesting
+    static AgentVersions get(Object agent, String name, VirtualChannel channel)
+            throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        final Probe probe = probe(agent, name, channel);
+        final AgentVersions versions;
+        try {
+            versions = probe.future.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Monitors sharing the probe count as a single timeout
+            if (probe.timedOut.compareAndSet(false, true)) {
+                ProbeCircuitBreaker.timeout(agent, name);
+            }
+            throw e;
+        }
+        ProbeCircuitBreaker.success(agent);
+        if (versions != null && channel instanceof Channel) {
+            ((Channel) channel).setProperty(VERSIONS, versions);
+        }
+        return versions;
+    }
+
+    /**
+     * @return the versions of the agent if they are already known, without waiting nor calling it.
+     */
+    @CheckForNull
+    static AgentVersions known(Computer c) {
+        final VirtualChannel channel = c.getChannel();
+        if (channel instanceof Channel) {
+            final AgentVersions versions = ((Channel) channel).getProperty(VERSIONS);
+            if (versions != null) {
+                return versions;
+            }
+        }
+        final Probe probe = PROBES.get(c);
+        return probe != null && probe.channel == channel ? probe.result() : null;
+    }
+
+    /**
+     * @return true if getting the versions of the agent requires a new call to it: they are not known and not being
+     * probed.
+     */
+    static boolean needsCall(Computer c) {
+        final VirtualChannel channel = c.getChannel();
+        if (channel == null || known(c) != null) {
+            return false;
+        }
+        final Probe probe = PROBES.get(c);
+        return probe == null || !probe.isReusable(channel);
+    }
+
+    private static Probe probe(Object agent, String name, VirtualChannel channel) throws IOException, InterruptedException, TimeoutException {
+        if (channel instanceof Channel) {
+            final AgentVersions known = ((Channel) channel).getProperty(VERSIONS);
+            if (known != null) {
+                return new Probe(channel, CompletableFuture.completedFuture(known));
+            }
+        }
+        // Sending the request may block on a congested or half dead channel: only the callers for that agent wait
+        final ReentrantLock lock = lockOf(agent);
+        if (!lock.tryLock(TIMEOUT, TimeUnit.MILLISECONDS)) {
+            throw new TimeoutException("Still sending the previous probe to " + name);
+        }
+        try {
+            final Probe current = PROBES.get(agent);
+            if (current != null) {
+                if (current.isReusable(channel)) {
+                    (current.future.isDone() ? REUSED : COALESCED).incrementAndGet();
+                    return current;
+                }
+                current.future.cancel(true);
+            }
+            ProbeCircuitBreaker.allow(agent, name);
+            final Probe probe = new Probe(channel, channel.callAsync(new Versions()));
+            PROBES.put(agent, probe);
+            CALLS.incrementAndGet();
+            return probe;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static ReentrantLock lockOf(Object agent) {
+        final ReentrantLock lock = LOCKS.get(agent);
+        if (lock != null) {
+            return lock;
+        }
+        final ReentrantLock created = new ReentrantLock();
+        final ReentrantLock existing = LOCKS.putIfAbsent(agent, created);
+        return existing != null ? existing : created;
+    }
+
+    /**
+     * @return how many times agents were called.
+     */
+    static long getCallCount() {
+        return CALLS.get();
+    }
+
+    /**
+     * @return how many requests waited for a probe still running on the same channel instead of calling the agent.
+     */
+    static long getCoalescedCount() {
+        return COALESCED.get();
+    }
+
+    /**
+     * @return how many requests got the result of a completed probe of the same channel, like for agents whose
+     * channel cannot record the versions.
+     */
+    static long getReusedCount() {
+        return REUSED.get();
+    }
+
+    /**
+     * Forgets the result of the probe of the agent, like when its channel is closed.
+     */
+    static void forget(Computer c) {
+        PROBES.remove(c);
+        ProbeCircuitBreaker.forget(c);
+    }
+
+    /**
+     * Forgets the probes of the agents which are not there anymore.
+     */
+    static void retain(Collection<Computer> computers) {
+        PROBES.keySet().retainAll(computers);
+        LOCKS.keySet().retainAll(computers);
+        ProbeCircuitBreaker.retain(computers);
+    }
+
+    private static final class Versions extends MasterToSlaveCallable<AgentVersions, IOException> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public AgentVersions call() throws IOException {
+            return new AgentVersions(remotingVersion(), System.getProperty(JVMVersionMonitor.JAVA_VERSION),
+                                     AgentVersions.bytecodeLevel(System.getProperty("java.class.version")));
+        }
+
+        private static String remotingVersion() {
+            try {
+                return Launcher.VERSION;
+            } catch (Throwable ex) {
+                // Older slave.jar won't have VERSION
+                return "< 1.335";
+            }
+        }
+    }
+
+    private static final class Probe {
+        private final VirtualChannel channel;
+        private final Future<AgentVersions> future;
+        private final long started = System.currentTimeMillis();
+        private final AtomicBoolean timedOut = new AtomicBoolean();
+
+        Probe(VirtualChannel channel, Future<AgentVersions> future) {
+            this.channel = channel;
+            this.future = future;
+        }
+
+        boolean isReusable(VirtualChannel current) {
+            if (channel != current) {
+                return false;
+            }
+            return result() != null || System.currentTimeMillis() - started < MAX_AGE;
+        }
+
+        /**
+         * @return the versions if the probe succeeded, {@code null} if it is still running or failed.
+         */
+        @CheckForNull
+        AgentVersions result() {
+            if (!future.isDone() || future.isCancelled()) {
+                return null;
+            }
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds the class file header of a class, whatever the kind of location it was loaded from.
+ * <p>Locations are checked up front instead of letting a {@link java.util.jar.JarFile} fail on them: the code
+ * source can be a jar, a directory (exploded war, IDE), or something only the class loader knows how to read.</p>
+ */
+final class BytecodeLevelDetector {
+
+    private static final Logger LOGGER = Logger.getLogger(BytecodeLevelDetector.class.getName());
+
+    enum Strategy {
+        /**
+         * Header read from the jar the class was loaded from.
+         */
+        JAR,
+        /**
+         * Header read from the class file, below the directory the class was loaded from.
+         */
+        DIRECTORY,
+        /**
+         * Header read from the stream the class loader gives for the class file.
+         */
+        CLASSLOADER_RESOURCE,
+        /**
+         * Bytecode level inferred from the Jenkins version, when no class file could be read.
+         */
+        JENKINS_VERSION,
+        /**
+         * Highest level found by sampling the jars of the installed plugins.
+         */
+        PLUGINS
+    }
+
+    /**
+     * Outcome of a detection, kept for diagnostics.
+     */
+    static final class Detection {
+        private final Strategy strategy;
+        private final int majorVersion;
+        private final String source;
+
+        Detection(Strategy strategy, int majorVersion, String source) {
+            this.strategy = strategy;
+            this.majorVersion = majorVersion;
+            this.source = source;
+        }
+
+        Strategy getStrategy() {
+            return strategy;
+        }
+
+        int getMajorVersion() {
+            return majorVersion;
+        }
+
+        String getSource() {
+            return source;
+        }
+
+        @Override
+        public String toString() {
+            return majorVersion + " (" + strategy + ": " + source + ")";
+        }
+    }
+
+    private BytecodeLevelDetector() {
+    }
+
+    /**
+     * @return the detection, or {@code null} if the class file header could not be read from any location.
+     */
+    @CheckForNull
+    static Detection detect(Class<?> clazz) {
+        final String entryName = clazz.getName().replace('.', '/') + ".class";
+
+        final Path location = toPath(clazz);
+        if (location != null) {
+            if (Files.isRegularFile(location)) {
+                ClassFileHeader header = fromJar(location, entryName);
+                if (header != null) {
+                    return new Detection(Strategy.JAR, header.getMajorVersion(), location.toString());
+                }
+            } else if (Files.isDirectory(location)) {
+                Path classFile = location.resolve(entryName);
+                ClassFileHeader header = fromClassFile(classFile);
+                if (header != null) {
+                    return new Detection(Strategy.DIRECTORY, header.getMajorVersion(), classFile.toString());
+                }
+            }
+        }
+
+        ClassFileHeader header = fromClassLoader(clazz, entryName);
+        if (header != null) {
+            return new Detection(Strategy.CLASSLOADER_RESOURCE, header.getMajorVersion(), entryName);
+        }
+        return null;
+    }
+
+    /**
+     * @return the local path of the code source of the class, {@code null} if it is not a local file.
+     */
+    @CheckForNull
+    static Path toPath(Class<?> clazz) {
+        final CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            return null;
+        }
+        return toPath(codeSource.getLocation());
+    }
+
+    /**
+     * @return the local path of the URL, {@code null} if it is not a local file.
+     */
+    @CheckForNull
+    static Path toPath(URL location) {
+        if (!"file".equals(location.getProtocol())) {
+            return null;
+        }
+        try {
+            // Decodes escaped characters, like %20
+            return Paths.get(location.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            // Some class loaders give URLs with unescaped characters, which are then valid as is
+            return new File(location.getPath()).toPath();
+        }
+    }
+
+    @CheckForNull
+    private static ClassFileHeader fromJar(Path jar, String entryName) {
+        try {
+            return valid(ClassFileHeaderReader.read(jar, entryName));
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not read " + entryName + " from " + jar, e);
+            return null;
+        }
+    }
+
+    @CheckForNull
+    private static ClassFileHeader fromClassFile(Path classFile) {
+        if (!Files.isRegularFile(classFile)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(classFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(ClassFileHeader.LENGTH);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading
+            }
+            return buffer.hasRemaining() ? null : valid(ClassFileHeader.parse(buffer.array()));
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not read " + classFile, e);
+            return null;
+        }
+    }
+
+    @CheckForNull
+    private static ClassFileHeader fromClassLoader(Class<?> clazz, String entryName) {
+        ClassLoader classLoader = clazz.getClassLoader();
+        if (classLoader == null) {
+            classLoader = ClassLoader.getSystemClassLoader();
+        }
+        try (InputStream stream = classLoader.getResourceAsStream(entryName)) {
+            if (stream == null) {
+                return null;
+            }
+            byte[] bytes = new byte[ClassFileHeader.LENGTH];
+            int read = 0;
+            while (read < bytes.length) {
+                int count = stream.read(bytes, read, bytes.length - read);
+                if (count < 0) {
+                    return null;
+                }
+                read += count;
+            }
+            return valid(ClassFileHeader.parse(bytes));
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not read " + entryName + " from the class loader", e);
+            return null;
+        }
+    }
+
+    @CheckForNull
+    private static ClassFileHeader valid(@CheckForNull ClassFileHeader header) {
+        if (header != null && !header.isValid()) {
+            LOGGER.log(Level.FINE, "Ignoring abnormal class file header {0}", header);
+            return null;
+        }
+        return header;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+import com.google.common.annotations.VisibleForTesting;
+import jenkins.model.Jenkins;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bytecode levels of already scanned jars, persisted in {@code JENKINS_HOME} so that a restart only scans the jars
+ * which changed since.
+ * <p>Entries are keyed by jar path, and are only valid for the length and modification time the jar had when it was
+ * scanned. The file is a small binary file, starting with a magic number and a format version: any unexpected
+ * content simply discards the whole index, which is then rebuilt by the next scan.</p>
+ */
+final class BytecodeLevelIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(BytecodeLevelIndex.class.getName());
+
+    private static final int MAGIC = 0x4a564d42; // "JVMB"
+    private static final int FORMAT_VERSION = 1;
+
+    static final String FILE_NAME = BytecodeLevelIndex.class.getName() + ".bin";
+
+    private static volatile BytecodeLevelIndex instance;
+
+    private static final class Entry {
+        final long length;
+        final long lastModified;
+        final int majorVersion;
+
+        Entry(long length, long lastModified, int majorVersion) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.majorVersion = majorVersion;
+        }
+    }
+
+    private final File file;
+    private final int sampleSize;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+
+    @VisibleForTesting
+    BytecodeLevelIndex(File file, int sampleSize) {
+        this.file = file;
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * @return the index of this Jenkins instance, loaded from disk on first use.
+     */
+    static BytecodeLevelIndex get() {
+        BytecodeLevelIndex index = instance;
+        if (index == null) {
+            synchronized (BytecodeLevelIndex.class) {
+                index = instance;
+                if (index == null) {
+                    index = new BytecodeLevelIndex(new File(Jenkins.getInstance().getRootDir(), FILE_NAME),
+                                                   PluginBytecodeScanner.SAMPLE_SIZE);
+                    index.load();
+                    instance = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the bytecode level recorded for this exact jar, or -1 if the jar is unknown or changed since.
+     */
+    int lookup(Path jar, BasicFileAttributes attributes) {
+        Entry entry = entries.get(jar.toString());
+        if (entry == null || entry.length != attributes.size()
+                || entry.lastModified != attributes.lastModifiedTime().toMillis()) {
+            return -1;
+        }
+        return entry.majorVersion;
+    }
+
+    void put(Path jar, BasicFileAttributes attributes, int majorVersion) {
+        entries.put(jar.toString(),
+                    new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), majorVersion));
+        dirty = true;
+    }
+
+    /**
+     * Forgets the jars which are not part of the given ones anymore, like the ones of uninstalled plugins.
+     */
+    void retain(Collection<Path> jars) {
+        Set<String> kept = new HashSet<>();
+        for (Path jar : jars) {
+            kept.add(jar.toString());
+        }
+        if (entries.keySet().retainAll(kept)) {
+            dirty = true;
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    synchronized void load() {
+        entries.clear();
+        try (InputStream stream = Files.newInputStream(file.toPath());
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readInt() != sampleSize) {
+                LOGGER.log(Level.INFO, "Ignoring {0}, written by another version, it will be rebuilt", file);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String jar = in.readUTF();
+                entries.put(jar, new Entry(in.readLong(), in.readLong(), in.readUnsignedShort()));
+            }
+            LOGGER.log(Level.FINE, "Loaded {0} jar bytecode level(s) from {1}", new Object[]{count, file});
+        } catch (NoSuchFileException e) {
+            LOGGER.log(Level.FINE, "No {0} yet", file);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.INFO, "Ignoring unreadable " + file + ", it will be rebuilt", e);
+            entries.clear();
+        } finally {
+            dirty = false;
+        }
+    }
+
+    /**
+     * Writes the index to a temporary file first, so that a crash cannot leave a truncated index behind.
+     */
+    synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        final Map<String, Entry> snapshot = new HashMap<>(entries);
+        final Path target = file.toPath();
+        final Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (OutputStream stream = Files.newOutputStream(temp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(sampleSize);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeLong(e.getValue().length);
+                    out.writeLong(e.getValue().lastModified);
+                    out.writeShort(e.getValue().majorVersion);
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            dirty = true;
+            LOGGER.log(Level.WARNING, "Could not save " + file, e);
+        }
+    }
+}
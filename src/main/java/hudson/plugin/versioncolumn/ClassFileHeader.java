@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+/**
+ * The first 8 bytes of a class file: magic number, then minor and major versions.
+ *
+ * @see <a href="https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.1">The ClassFile Structure</a>
+ */
+final class ClassFileHeader {
+
+    static final int MAGIC = 0xCAFEBABE;
+    static final int LENGTH = 8;
+
+    private final int magic;
+    private final int minorVersion;
+    private final int majorVersion;
+
+    ClassFileHeader(int magic, int minorVersion, int majorVersion) {
+        this.magic = magic;
+        this.minorVersion = minorVersion;
+        this.majorVersion = majorVersion;
+    }
+
+    /**
+     * @param bytes at least {@link #LENGTH} bytes, read from the start of a class file.
+     */
+    static ClassFileHeader parse(byte[] bytes) {
+        int magic = (bytes[0] & 0xff) << 24 | (bytes[1] & 0xff) << 16 | (bytes[2] & 0xff) << 8 | bytes[3] & 0xff;
+        int minor = (bytes[4] & 0xff) << 8 | bytes[5] & 0xff;
+        int major = (bytes[6] & 0xff) << 8 | bytes[7] & 0xff;
+        return new ClassFileHeader(magic, minor, major);
+    }
+
+    int getMagic() {
+        return magic;
+    }
+
+    int getMinorVersion() {
+        return minorVersion;
+    }
+
+    int getMajorVersion() {
+        return majorVersion;
+    }
+
+    boolean isValid() {
+        return magic == MAGIC;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%08x %d.%d", magic, majorVersion, minorVersion);
+    }
+}
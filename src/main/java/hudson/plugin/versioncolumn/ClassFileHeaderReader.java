@@ -0,0 +1,325 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+import javax.annotation.CheckForNull;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads {@link ClassFileHeader}s straight out of a jar file.
+ * <p>Unlike {@link java.util.jar.JarFile}, no entry object is created for the whole central directory: it is read
+ * once as raw bytes, and scanned for the requested entry name. Only the first compressed bytes of that entry are
+ * then inflated, enough to get the 8 bytes of the header.</p>
+ * <p>The jar is read through a {@link FileChannel} rather than memory mapped, since a mapping cannot be released
+ * on demand and would keep plugin jars locked on Windows.</p>
+ * <p>Instances are not thread-safe. Zip64 archives are not supported.</p>
+ */
+final class ClassFileHeaderReader implements Closeable {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final int CENTRAL_HEADER_LENGTH = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_LENGTH = 22;
+    private static final int MAX_COMMENT_LENGTH = 0xffff;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    /**
+     * A handful of compressed bytes is usually enough to inflate the 8 first bytes of a class file.
+     */
+    private static final int INFLATE_CHUNK_LENGTH = 64;
+
+    private static final byte[] CLASS_SUFFIX = ".class".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] META_INF_PREFIX = "META-INF/".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MODULE_INFO = "module-info.class".getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final ByteBuffer centralDirectory;
+    /**
+     * Where the central directory starts, hence where the entries data must end.
+     */
+    private final long centralDirectoryOffset;
+    private final byte[] inflateChunk = new byte[INFLATE_CHUNK_LENGTH];
+
+    private ClassFileHeaderReader(FileChannel channel, long centralDirectoryOffset, ByteBuffer centralDirectory) {
+        this.channel = channel;
+        this.centralDirectoryOffset = centralDirectoryOffset;
+        this.centralDirectory = centralDirectory;
+    }
+
+    static ClassFileHeaderReader open(Path jar) throws IOException {
+        FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ);
+        try {
+            return readCentralDirectory(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a single header from a jar.
+     *
+     * @param entryName for instance {@code jenkins/model/Jenkins.class}.
+     * @return the header, or {@code null} if there is no such entry or if it is too short to be a class file.
+     */
+    @CheckForNull
+    static ClassFileHeader read(Path jar, String entryName) throws IOException {
+        try (ClassFileHeaderReader reader = open(jar)) {
+            return reader.read(entryName);
+        }
+    }
+
+    /**
+     * @param entryName for instance {@code jenkins/model/Jenkins.class}.
+     * @return the header, or {@code null} if there is no such entry or if it is too short to be a class file.
+     */
+    @CheckForNull
+    ClassFileHeader read(String entryName) throws IOException {
+        int position = find(entryName.getBytes(StandardCharsets.UTF_8));
+        if (position < 0) {
+            return null;
+        }
+        return readHeader(position);
+    }
+
+    /**
+     * Reads the headers of some class entries, spread evenly over the jar, instead of all of them.
+     * <p>Entries below {@code META-INF/}, like multi-release classes, and {@code module-info.class} are skipped
+     * since they are never loaded on a runtime that does not support them.</p>
+     *
+     * @param sampleSize maximum number of headers to read.
+     * @return the highest major version found, 0 if no class entry could be read.
+     */
+    int sampleMaxMajorVersion(int sampleSize) throws IOException {
+        int[] classEntries = new int[64];
+        int count = 0;
+        for (int position = 0; position + CENTRAL_HEADER_LENGTH <= centralDirectory.limit(); position = nextRecord(position)) {
+            checkRecord(position);
+            if (isSampledClass(position)) {
+                if (count == classEntries.length) {
+                    classEntries = Arrays.copyOf(classEntries, count * 2);
+                }
+                classEntries[count++] = position;
+            }
+        }
+
+        int max = 0;
+        int samples = Math.min(sampleSize, count);
+        for (int i = 0; i < samples; i++) {
+            ClassFileHeader header = readHeader(classEntries[(int) ((long) i * count / samples)]);
+            if (header != null && header.isValid()) {
+                max = Math.max(max, header.getMajorVersion());
+            }
+        }
+        return max;
+    }
+
+    private boolean isSampledClass(int position) {
+        int nameLength = centralDirectory.getShort(position + 28) & 0xffff;
+        int nameOffset = position + CENTRAL_HEADER_LENGTH;
+        return endsWith(nameOffset, nameLength, CLASS_SUFFIX)
+                && !startsWith(nameOffset, nameLength, META_INF_PREFIX)
+                && !endsWith(nameOffset, nameLength, MODULE_INFO);
+    }
+
+    private boolean startsWith(int nameOffset, int nameLength, byte[] prefix) {
+        return nameLength >= prefix.length && nameEquals(nameOffset, prefix);
+    }
+
+    private boolean endsWith(int nameOffset, int nameLength, byte[] suffix) {
+        return nameLength >= suffix.length && nameEquals(nameOffset + nameLength - suffix.length, suffix);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @return the position of the central directory record of the entry, -1 if not found.
+     */
+    private int find(byte[] name) throws ZipException {
+        int position = 0;
+        while (position + CENTRAL_HEADER_LENGTH <= centralDirectory.limit()) {
+            checkRecord(position);
+            int nameLength = centralDirectory.getShort(position + 28) & 0xffff;
+            if (nameLength == name.length && nameEquals(position + CENTRAL_HEADER_LENGTH, name)) {
+                return position;
+            }
+            position = nextRecord(position);
+        }
+        return -1;
+    }
+
+    /**
+     * Checks the signature of the record, and that its name lies within the central directory.
+     */
+    private void checkRecord(int position) throws ZipException {
+        int nameLength = centralDirectory.getShort(position + 28) & 0xffff;
+        if (centralDirectory.getInt(position) != CENTRAL_HEADER_SIGNATURE
+                || position + CENTRAL_HEADER_LENGTH + nameLength > centralDirectory.limit()) {
+            throw new ZipException("Invalid central directory record at offset " + position);
+        }
+    }
+
+    private int nextRecord(int position) {
+        int nameLength = centralDirectory.getShort(position + 28) & 0xffff;
+        int extraLength = centralDirectory.getShort(position + 30) & 0xffff;
+        int commentLength = centralDirectory.getShort(position + 32) & 0xffff;
+        return position + CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength;
+    }
+
+    private boolean nameEquals(int offset, byte[] name) {
+        for (int i = 0; i < name.length; i++) {
+            if (centralDirectory.get(offset + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @CheckForNull
+    private ClassFileHeader readHeader(int position) throws IOException {
+        int method = centralDirectory.getShort(position + 10) & 0xffff;
+        long compressedSize = centralDirectory.getInt(position + 20) & 0xffffffffL;
+        long localHeaderOffset = centralDirectory.getInt(position + 42) & 0xffffffffL;
+        if (localHeaderOffset + LOCAL_HEADER_LENGTH > centralDirectoryOffset) {
+            throw new ZipException("Invalid local file header offset " + localHeaderOffset);
+        }
+
+        ByteBuffer localHeader = read(channel, localHeaderOffset, LOCAL_HEADER_LENGTH);
+        if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local file header at offset " + localHeaderOffset);
+        }
+        long dataOffset = localHeaderOffset + LOCAL_HEADER_LENGTH
+                + (localHeader.getShort(26) & 0xffff) + (localHeader.getShort(28) & 0xffff);
+        if (dataOffset + compressedSize > centralDirectoryOffset) {
+            throw new ZipException("Invalid entry data at offset " + dataOffset);
+        }
+
+        byte[] header = new byte[ClassFileHeader.LENGTH];
+        if (method == STORED) {
+            if (compressedSize < header.length) {
+                return null;
+            }
+            readFully(channel, ByteBuffer.wrap(header), dataOffset);
+        } else if (method == DEFLATED) {
+            if (!inflate(dataOffset, compressedSize, header)) {
+                return null;
+            }
+        } else {
+            throw new ZipException("Unsupported compression method " + method);
+        }
+        return ClassFileHeader.parse(header);
+    }
+
+    /**
+     * Inflates only the first {@code output.length} bytes of a deflated entry.
+     *
+     * @return false if the entry is shorter than the output.
+     */
+    private boolean inflate(long dataOffset, long compressedSize, byte[] output) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            long consumed = 0;
+            int produced = 0;
+            while (produced < output.length) {
+                if (inflater.needsInput()) {
+                    if (consumed >= compressedSize) {
+                        return false;
+                    }
+                    int length = (int) Math.min(inflateChunk.length, compressedSize - consumed);
+                    readFully(channel, ByteBuffer.wrap(inflateChunk, 0, length), dataOffset + consumed);
+                    inflater.setInput(inflateChunk, 0, length);
+                    consumed += length;
+                }
+                int inflated = inflater.inflate(output, produced, output.length - produced);
+                produced += inflated;
+                if (inflater.finished() || inflated == 0 && (inflater.needsDictionary() || !inflater.needsInput())) {
+                    break;
+                }
+            }
+            return produced == output.length;
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid deflated data at offset " + dataOffset + ": " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static ClassFileHeaderReader readCentralDirectory(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int tailLength = (int) Math.min(size, END_OF_CENTRAL_DIRECTORY_LENGTH + MAX_COMMENT_LENGTH);
+        long tailOffset = size - tailLength;
+        ByteBuffer tail = read(channel, tailOffset, tailLength);
+        for (int i = tailLength - END_OF_CENTRAL_DIRECTORY_LENGTH; i >= 0; i--) {
+            if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                long centralDirectorySize = tail.getInt(i + 12) & 0xffffffffL;
+                long centralDirectoryOffset = tail.getInt(i + 16) & 0xffffffffL;
+                if (centralDirectoryOffset + centralDirectorySize > tailOffset + i
+                        || centralDirectorySize > Integer.MAX_VALUE) {
+                    throw new ZipException("Unsupported or corrupted central directory");
+                }
+                return new ClassFileHeaderReader(channel, centralDirectoryOffset,
+                                                 read(channel, centralDirectoryOffset, (int) centralDirectorySize));
+            }
+        }
+        throw new ZipException("End of central directory not found");
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, buffer, position);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file at offset " + offset);
+            }
+            offset += read;
+        }
+    }
+}
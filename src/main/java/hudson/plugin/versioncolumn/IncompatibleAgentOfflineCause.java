@@ -0,0 +1,56 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+import hudson.slaves.OfflineCause;
+import org.jvnet.localizer.Localizable;
+
+/**
+ * Offline cause set by the monitors of this plugin, so that they only bring back online the agents they took offline
+ * themselves, and not those taken offline by an administrator or by another monitor.
+ */
+public class IncompatibleAgentOfflineCause extends OfflineCause.SimpleOfflineCause {
+
+    private final String monitor;
+
+    IncompatibleAgentOfflineCause(String monitor, Localizable description) {
+        super(description);
+        this.monitor = monitor;
+    }
+
+    /**
+     * @return the class name of the descriptor of the monitor which took the agent offline.
+     */
+    public String getMonitor() {
+        return monitor;
+    }
+
+    /**
+     * @return true if the agent was taken offline by that monitor.
+     */
+    static boolean isSetBy(OfflineCause cause, String monitor) {
+        return cause instanceof IncompatibleAgentOfflineCause
+                && ((IncompatibleAgentOfflineCause) cause).monitor.equals(monitor);
+    }
+}
@@ -1,10 +1,12 @@
 package hudson.plugin.versioncolumn;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 class JVMConstants {
 
+    private static final Logger LOGGER = Logger.getLogger(JVMConstants.class.getName());
+
     public static final int JAVA_5 = 49;
     public static final int JAVA_6 = 50;
     public static final int JAVA_7 = 51;
@@ -14,28 +16,78 @@ class JVMConstants {
     public static final int JAVA_11 = 55;
     public static final int JAVA_12 = 56;
 
-    static final Map<String, Integer> JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING = new LinkedHashMap<String, Integer>();
-
-    static {
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("1.1", 45);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("1.2", 46);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("1.3", 47);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("1.4", 48);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("1.5", JAVA_5);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("1.6", JAVA_6);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("6", JAVA_6);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("1.7", JAVA_7);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("7", JAVA_7);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("1.8", JAVA_8);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("8", JAVA_8);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("1.9", JAVA_9);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("9", JAVA_9);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("9.0", JAVA_9);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("10", JAVA_10);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("10.0", JAVA_10);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("11", JAVA_11);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("11.0", JAVA_11);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("12", JAVA_12);
-        JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.put("12.0", JAVA_12);
+    /**
+     * Returned by {@link #maxBytecodeLevel(int)} for a feature release which is not a Java version.
+     */
+    static final int UNKNOWN_BYTECODE_LEVEL = 0;
+
+    /**
+     * Every feature release since Java 1.1 (45) increments the major version of the class file format by one.
+     */
+    private static final int FEATURE_TO_BYTECODE_LEVEL_OFFSET = 44;
+
+    /**
+     * Overrides of the computed bytecode levels, for instance {@code 42=86,43=87}.
+     */
+    static final String OVERRIDES_PROPERTY = JVMConstants.class.getName() + ".bytecodeLevels";
+
+    private static final int MAX_OVERRIDDEN_FEATURE = 255;
+
+    /**
+     * Highest bytecode level a runtime can load, indexed by feature release: {@code 8} for 1.8.0_66, {@code 17} for
+     * 17.0.9.
+     * Feature releases past its end follow the computed rule.
+     */
+    private static final int[] FEATURE_TO_BYTECODE_LEVEL = bytecodeLevels(System.getProperty(OVERRIDES_PROPERTY));
+
+    /**
+     * @param feature the feature release number, as returned by {@link JavaVersionParser#feature(long)}.
+     * @return the highest bytecode level a runtime of this feature release can load, or
+     * {@link #UNKNOWN_BYTECODE_LEVEL} if the feature release is not a Java version.
+     */
+    static int maxBytecodeLevel(int feature) {
+        if (feature < 1) {
+            return UNKNOWN_BYTECODE_LEVEL;
+        }
+        return feature < FEATURE_TO_BYTECODE_LEVEL.length ?
+                FEATURE_TO_BYTECODE_LEVEL[feature] : feature + FEATURE_TO_BYTECODE_LEVEL_OFFSET;
+    }
+
+    /**
+     * @param overrides comma separated {@code feature=level} pairs, invalid ones being ignored.
+     */
+    static int[] bytecodeLevels(String overrides) {
+        int[] levels = new int[32];
+        if (overrides != null) {
+            for (String override : overrides.split(",")) {
+                String[] pair = override.trim().split("=");
+                try {
+                    int feature = Integer.parseInt(pair[0].trim());
+                    int level = Integer.parseInt(pair[1].trim());
+                    if (pair.length != 2 || feature < 1 || feature > MAX_OVERRIDDEN_FEATURE || level < 1) {
+                        throw new IllegalArgumentException();
+                    }
+                    if (feature >= levels.length) {
+                        levels = grow(levels, feature + 1);
+                    }
+                    levels[feature] = level;
+                } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                    LOGGER.log(Level.WARNING, "Ignoring invalid bytecode level override ''{0}'' in {1}",
+                               new Object[]{override, OVERRIDES_PROPERTY});
+                }
+            }
+        }
+        for (int feature = 1; feature < levels.length; feature++) {
+            if (levels[feature] == 0) {
+                levels[feature] = feature + FEATURE_TO_BYTECODE_LEVEL_OFFSET;
+            }
+        }
+        return levels;
+    }
+
+    private static int[] grow(int[] levels, int length) {
+        int[] grown = new int[length];
+        System.arraycopy(levels, 0, grown, 0, levels.length);
+        return grown;
     }
 }
@@ -24,21 +24,16 @@
 package hudson.plugin.versioncolumn;
 
 import com.google.common.annotations.VisibleForTesting;
+import hudson.PluginWrapper;
 import hudson.util.VersionNumber;
 import jenkins.model.Jenkins;
-import org.apache.commons.codec.binary.Hex;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
-import java.io.InputStream;
-import java.net.URL;
-import java.util.jar.JarFile;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-
-import static hudson.plugin.versioncolumn.JVMConstants.JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING;
 
 /**
  * Responsible for master and agent jvm versions comparisons, and notions of "compatibility".
@@ -49,34 +44,59 @@ class JVMVersionComparator {
 
     private static final Logger LOGGER = Logger.getLogger(JVMVersionComparator.class.getName());
 
-    private static final Pattern MAJOR_MINOR_PATTERN = Pattern.compile("(\\d+\\.\\d+).*");
     private final MasterBytecodeMajorVersionNumberGetter masterBytecodeMajorVersionNumberGetter;
     private boolean compatible;
 
     JVMVersionComparator(String masterVersion, String agentVersion, ComparisonMode comparisonMode) {
-        this(masterVersion, agentVersion, comparisonMode, new MasterBytecodeMajorVersionNumberGetter());
+        this(masterVersion, agentVersion, comparisonMode,
+             ComparisonMode.RUNTIME_GREATER_OR_EQUAL_PLUGINS_BYTECODE == comparisonMode ?
+                     MasterBytecodeLevel.WITH_PLUGINS : MasterBytecodeLevel.INSTANCE);
     }
 
     @VisibleForTesting
     JVMVersionComparator(String masterVersion, String agentVersion, ComparisonMode comparisonMode, MasterBytecodeMajorVersionNumberGetter versionNumberGetter) {
+        this(masterVersion, agentVersion, 0, comparisonMode, versionNumberGetter);
+    }
+
+    /**
+     * @param agentBytecodeLevel the highest class file major version the agent JVM can load, as reported by its
+     *                           {@code java.class.version}, or 0 if unknown, in which case it is inferred from
+     *                           the agent version.
+     */
+    JVMVersionComparator(String masterVersion, String agentVersion, int agentBytecodeLevel, ComparisonMode comparisonMode,
+                         MasterBytecodeMajorVersionNumberGetter versionNumberGetter) {
         masterBytecodeMajorVersionNumberGetter = versionNumberGetter;
-        if (ComparisonMode.RUNTIME_GREATER_OR_EQUAL_MASTER_BYTECODE == comparisonMode) {
-            compatible = isAgentRuntimeCompatibleWithJenkinsBytecodeLevel(computeMajorMinor(agentVersion));
+        if (ComparisonMode.RUNTIME_GREATER_OR_EQUAL_MASTER_BYTECODE == comparisonMode
+                || ComparisonMode.RUNTIME_GREATER_OR_EQUAL_PLUGINS_BYTECODE == comparisonMode) {
+            compatible = agentBytecodeLevel > 0 ?
+                    getMasterBytecodeMajorVersionNumber() <= agentBytecodeLevel :
+                    isAgentRuntimeCompatibleWithJenkinsBytecodeLevel(agentVersion);
         } else if (ComparisonMode.EXACT_MATCH == comparisonMode) {
             compatible = masterVersion.equals(agentVersion);
         } else if (ComparisonMode.MAJOR_MINOR_MATCH == comparisonMode) {
-            compatible = computeMajorMinor(masterVersion).equals(computeMajorMinor(agentVersion));
+            compatible = JavaVersionParser.sameFeatureAndInterim(JavaVersionParser.parse(masterVersion),
+                                                                 JavaVersionParser.parse(agentVersion));
         }
     }
 
     @Nonnull
     @VisibleForTesting
     static String computeMajorMinor(String version) {
-        final Matcher matcher = MAJOR_MINOR_PATTERN.matcher(version);
-        if (!matcher.matches()) {
+        final long key = JavaVersionParser.parse(version);
+        if (key == JavaVersionParser.INVALID) {
             throw new IllegalArgumentException(version + " is not a supported JVM version pattern");
         }
-        return matcher.group(1);
+        return computeMajorMinor(key);
+    }
+
+    /**
+     * @return {@code 1.8} for a legacy 1.8.0_66 version, {@code 11.0} for 11 or 11.0.2.
+     */
+    @Nonnull
+    private static String computeMajorMinor(long key) {
+        return JavaVersionParser.isLegacy(key) ?
+                "1." + JavaVersionParser.feature(key) :
+                JavaVersionParser.feature(key) + "." + JavaVersionParser.interim(key);
     }
 
     /**
@@ -89,13 +109,17 @@ class JVMVersionComparator {
         return masterBytecodeMajorVersionNumberGetter.get();
     }
 
-    private boolean isAgentRuntimeCompatibleWithJenkinsBytecodeLevel(String agentMajorMinorVersion) {
-        Integer masterBytecodeLevel = getMasterBytecodeMajorVersionNumber();
-        Integer agentVMMaxBytecodeLevel = JDK_VERSION_NUMBER_TO_BYTECODE_LEVEL_MAPPING.get(agentMajorMinorVersion);
-        if (agentVMMaxBytecodeLevel != null) {
-            return masterBytecodeLevel <= agentVMMaxBytecodeLevel;
+    private boolean isAgentRuntimeCompatibleWithJenkinsBytecodeLevel(String agentVersion) {
+        final long agentKey = JavaVersionParser.parse(agentVersion);
+        if (agentKey == JavaVersionParser.INVALID) {
+            LOGGER.log(Level.WARNING, Messages.JVMVersionMonitor_UnrecognizedAgentJVM(agentVersion));
+            return false;
+        }
+        final int agentVMMaxBytecodeLevel = JVMConstants.maxBytecodeLevel(JavaVersionParser.feature(agentKey));
+        if (agentVMMaxBytecodeLevel != JVMConstants.UNKNOWN_BYTECODE_LEVEL) {
+            return getMasterBytecodeMajorVersionNumber() <= agentVMMaxBytecodeLevel;
         } else {
-            LOGGER.log(Level.WARNING, Messages.JVMVersionMonitor_UnrecognizedAgentJVM(agentMajorMinorVersion));
+            LOGGER.log(Level.WARNING, Messages.JVMVersionMonitor_UnrecognizedAgentJVM(computeMajorMinor(agentKey)));
             /*
              * Even if the version might be compatible, we still mark the node as incompatible to prevent potential issues.
              */
@@ -113,6 +137,7 @@ class JVMVersionComparator {
 
     public enum ComparisonMode {
         RUNTIME_GREATER_OR_EQUAL_MASTER_BYTECODE(Messages.JVMVersionMonitor_RUNTIME_GREATER_OR_EQUAL_MASTER_BYTECODE()),
+        RUNTIME_GREATER_OR_EQUAL_PLUGINS_BYTECODE(Messages.JVMVersionMonitor_RUNTIME_GREATER_OR_EQUAL_PLUGINS_BYTECODE()),
         MAJOR_MINOR_MATCH(Messages.JVMVersionMonitor_MAJOR_MINOR_MATCH()),
         EXACT_MATCH(Messages.JVMVersionMonitor_EXACT_MATCH());
 
@@ -129,34 +154,40 @@ class JVMVersionComparator {
     }
 
     /**
-     * Delegate exclusively dedicated to testability
+     * Delegate dedicated to testability, and to caching through {@link MasterBytecodeLevel}.
      */
     @VisibleForTesting
     static class MasterBytecodeMajorVersionNumberGetter {
 
+        private volatile BytecodeLevelDetector.Detection lastDetection;
+
         public int get() {
+            BytecodeLevelDetector.Detection detection = detect();
+            LOGGER.log(Level.FINE, "Master bytecode level: {0}", detection);
+            lastDetection = detection;
+            return detection.getMajorVersion();
+        }
 
-            final URL location = Jenkins.class.getProtectionDomain().getCodeSource().getLocation();
-            try (JarFile jarFile = new JarFile(location.getFile())) {
-                final ZipEntry jenkinsClassEntry = jarFile.getEntry("jenkins/model/Jenkins.class");
-
-                final InputStream inputStream = jarFile.getInputStream(jenkinsClassEntry);
-                byte[] magicAndClassFileVersion = new byte[8];
-
-                int read = inputStream.read(magicAndClassFileVersion);
-                final String hexaBytes = Hex.encodeHexString(magicAndClassFileVersion);
-                LOGGER.log(Level.FINE, "Jenkins.class file 8 first bytes: {0}", hexaBytes);
-                if (read != 8 || !hexaBytes.startsWith("cafebabe")) {
-                    throw new IllegalStateException("Jenkins.class content is abnormal: '" + hexaBytes + "'");
-                }
-                int javaMajor = (magicAndClassFileVersion[6] << 8) & 0xff00 |
-                        magicAndClassFileVersion[7] & 0xff;
-                LOGGER.log(Level.FINEST, "Bytecode major version {0}", javaMajor);
-            } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "Issue while reading Jenkins.class bytecode level", e);
+        @Nonnull
+        BytecodeLevelDetector.Detection detect() {
+            BytecodeLevelDetector.Detection detection = BytecodeLevelDetector.detect(Jenkins.class);
+            if (detection == null) {
+                LOGGER.log(Level.FINE, "Falling back to using Jenkins.getVersion to infer bytecode level");
+                detection = new BytecodeLevelDetector.Detection(BytecodeLevelDetector.Strategy.JENKINS_VERSION,
+                                                                inferFromJenkinsVersion(), String.valueOf(Jenkins.getVersion()));
             }
+            return detection;
+        }
 
-            LOGGER.log(Level.FINE, "Falling back to using Jenkins.getVersion to infer bytecode level");
+        /**
+         * @return how the last call to {@link #get()} found the bytecode level, {@code null} if not called yet.
+         */
+        @CheckForNull
+        BytecodeLevelDetector.Detection getLastDetection() {
+            return lastDetection;
+        }
+
+        private static int inferFromJenkinsVersion() {
             VersionNumber jenkinsVersion = Jenkins.getVersion();
             if (jenkinsVersion == null) {
                 throw new IllegalStateException("Jenkins.getVersion() returned a null value, stopping.");
@@ -176,4 +207,31 @@ class JVMVersionComparator {
             throw new IllegalStateException("Jenkins Bytecode Level could not be inferred");
         }
     }
+
+    /**
+     * Highest bytecode level among the master and the jars of all the active plugins, since plugin classes can
+     * also be sent to agents through remoting.
+     */
+    static class MasterAndPluginsBytecodeMajorVersionNumberGetter extends MasterBytecodeMajorVersionNumberGetter {
+
+        @Nonnull
+        @Override
+        BytecodeLevelDetector.Detection detect() {
+            final int masterLevel = MasterBytecodeLevel.INSTANCE.get();
+            final List<PluginWrapper> active = PluginBytecodeLevelListener.activePlugins();
+            final List<Path> jars = PluginBytecodeScanner.jarsOf(active);
+            final BytecodeLevelIndex index = BytecodeLevelIndex.get();
+            final PluginBytecodeScanner.Result plugins = PluginBytecodeScanner.scan(jars, index);
+            index.retain(jars);
+            index.save();
+            PluginBytecodeLevelListener.scanned(active);
+            if (plugins.getMajorVersion() > masterLevel) {
+                return new BytecodeLevelDetector.Detection(BytecodeLevelDetector.Strategy.PLUGINS,
+                                                           plugins.getMajorVersion(), String.valueOf(plugins.getJar()));
+            }
+            final BytecodeLevelDetector.Detection masterDetection = MasterBytecodeLevel.INSTANCE.getLastDetection();
+            return masterDetection != null ? masterDetection :
+                    new BytecodeLevelDetector.Detection(BytecodeLevelDetector.Strategy.JAR, masterLevel, "Jenkins core");
+        }
+    }
 }
@@ -25,20 +25,21 @@ package hudson.plugin.versioncolumn;
 
 import hudson.Extension;
 import hudson.model.Computer;
-import hudson.node_monitors.AbstractAsyncNodeMonitorDescriptor;
+import hudson.model.ComputerSet;
 import hudson.node_monitors.NodeMonitor;
-import hudson.remoting.Callable;
 import hudson.slaves.OfflineCause;
 import hudson.util.ListBoxModel;
 import jenkins.model.Jenkins;
-import jenkins.security.MasterToSlaveCallable;
 import org.apache.commons.codec.binary.Hex;
 import org.kohsuke.stapler.DataBoundConstructor;
 
-import java.io.IOException;
+import javax.annotation.CheckForNull;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.jar.JarFile;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 
@@ -55,6 +56,7 @@ public class JVMVersionMonitor extends NodeMonitor {
     public JVMVersionMonitor(JVMVersionComparator.ComparisonMode comparisonMode, boolean disconnect) {
         this.comparisonMode = comparisonMode;
         this.disconnect = disconnect;
+        VerdictCache.INSTANCE.invalidate();
     }
 
     public JVMVersionMonitor() {
@@ -65,43 +67,100 @@ public class JVMVersionMonitor extends NodeMonitor {
         return disconnect;
     }
 
+    /**
+     * Only reads the last received version: agents are checked by {@link #reconcile(Computer, String)} when their
+     * version is received, not when the page is rendered.
+     */
     @Override
     public Object data(Computer c) {
+        final String agentVersion = (String) super.data(c);
+        return agentVersion != null ? agentVersion : "N/A";
+    }
 
-        String agentVersion = (String) super.data(c);
-        if (agentVersion == null) {
-            return "N/A";
+    /**
+     * Takes the agent offline if its JVM version is not compatible with the master one, per the configuration, at
+     * the pace of {@link OfflineTransitions}. Brings it back online if it is compatible again.
+     *
+     * @return how the state of the agent changes, {@link Change#NONE} if it already waits for that change.
+     */
+    Change reconcile(Computer c, @CheckForNull String agentVersion) {
+        if (agentVersion == null || isIgnored()) {
+            return Change.NONE;
         }
-        final JVMVersionComparator jvmVersionComparator =
-                new JVMVersionComparator(MASTER_VERSION, agentVersion, comparisonMode);
-
-        if (!isIgnored() && jvmVersionComparator.isNotCompatible()) {
-            if (disconnect) {
-                LOGGER.warning(Messages.JVMVersionMonitor_MarkedOffline(c.getName(), MASTER_VERSION, agentVersion));
-                ((JvmVersionDescriptor) getDescriptor()).markOffline(c, OfflineCause.create(
-                        Messages._JVMVersionMonitor_OfflineCause()));
-            } else {
-                LOGGER.finer(
-                        "Version incompatibility detected, but keeping the agent '" + c.getName() + "' online per the node monitor configuration");
-            }
+        final JvmVersionDescriptor descriptor = (JvmVersionDescriptor) getDescriptor();
+        final AgentVersions versions = AgentVersionsProbe.known(c);
+        final int agentBytecodeLevel = versions != null ? versions.getBytecodeLevel() : 0;
+        if (VerdictCache.INSTANCE.isCompatible(comparisonMode, MASTER_VERSION, agentVersion, agentBytecodeLevel)) {
+            return descriptor.requestOnline(c) ? Change.ONLINE : Change.NONE;
+        }
+        if (disconnect) {
+            return descriptor.requestOffline(c, Messages._JVMVersionMonitor_OfflineCause(),
+                                             Messages.JVMVersionMonitor_MarkedOffline(c.getName(), MASTER_VERSION, agentVersion)) ?
+                    Change.OFFLINE : Change.NONE;
         }
-        return agentVersion;
+        LOGGER.finer(
+                "Version incompatibility detected, but keeping the agent '" + c.getName() + "' online per the node monitor configuration");
+        return descriptor.requestOnline(c) ? Change.ONLINE : Change.NONE;
+    }
+
+    enum Change {
+        NONE, OFFLINE, ONLINE
     }
 
     public JVMVersionComparator.ComparisonMode getComparisonMode() {
         return comparisonMode;
     }
 
+    /**
+     * Checks all agents again against their last known JVM version, without asking them for it again.
+     * Useful when the master bytecode level or the configuration changes.
+     *
+     * @return how many agents change, per change. Agents already waiting for the same change are not counted again.
+     */
+    static Map<Change, Integer> reevaluate() {
+        final Map<Change, Integer> changes = new EnumMap<>(Change.class);
+        for (Change change : Change.values()) {
+            changes.put(change, 0);
+        }
+        final JVMVersionMonitor monitor = ComputerSet.getMonitors().get(JVMVersionMonitor.class);
+        if (monitor == null || monitor.isIgnored()) {
+            return changes;
+        }
+        final JvmVersionDescriptor descriptor = (JvmVersionDescriptor) monitor.getDescriptor();
+        int checked = 0;
+        for (Computer c : Jenkins.getInstance().getComputers()) {
+            final String agentVersion = descriptor.get(c);
+            if (agentVersion == null) {
+                continue;
+            }
+            checked++;
+            final Change change = monitor.reconcile(c, agentVersion);
+            changes.put(change, changes.get(change) + 1);
+        }
+        LOGGER.log(Level.INFO, "Checked {0} agent(s) against their last known JVM version in {1} mode: "
+                           + "{2} to be taken offline, {3} to be brought back online",
+                   new Object[]{checked, monitor.comparisonMode, changes.get(Change.OFFLINE), changes.get(Change.ONLINE)});
+        return changes;
+    }
+
     @Extension
-    public static class JvmVersionDescriptor extends AbstractAsyncNodeMonitorDescriptor<String> {
+    public static class JvmVersionDescriptor extends AgentVersionsMonitorDescriptor<String> {
 
         public String getDisplayName() {
             return Messages.JVMVersionMonitor_DisplayName();
         }
 
         @Override
-        protected Callable<String, IOException> createCallable(Computer c) {
-            return new JavaVersion();
+        protected String extract(AgentVersions versions) {
+            return versions.getJavaVersion();
+        }
+
+        @Override
+        protected void received(Computer c, String version) {
+            final JVMVersionMonitor monitor = ComputerSet.getMonitors().get(JVMVersionMonitor.class);
+            if (monitor != null) {
+                monitor.reconcile(c, version);
+            }
         }
 
         @Override // Just augmenting visibility
@@ -117,11 +176,4 @@ public class JVMVersionMonitor extends NodeMonitor {
             return items;
         }
     }
-
-    private static class JavaVersion extends MasterToSlaveCallable<String, IOException> {
-        @Override
-        public String call() throws IOException {
-            return System.getProperty(JAVA_VERSION);
-        }
-    }
 }
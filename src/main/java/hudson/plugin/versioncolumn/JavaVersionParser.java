@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+/**
+ * Parses {@code java.version} values into a single {@code long}, without allocating anything.
+ * <p>Both formats are supported:</p>
+ * <ul>
+ *     <li>the legacy one, like {@code 1.8.0_66}: {@code 1.$FEATURE.$PATCH_$UPDATE}, {@code 1.8.0_66} being
+ *     Java 8 update 66.</li>
+ *     <li>the <a href="http://openjdk.java.net/jeps/223">JEP 223</a> one, like {@code 11}, {@code 17.0.9+9} or
+ *     {@code 21-ea}: {@code $FEATURE.$INTERIM.$UPDATE.$PATCH}, then an optional {@code -$PRE} pre-release
+ *     identifier, then optional {@code +$BUILD} and {@code -$OPT} parts, which are ignored.</li>
+ * </ul>
+ * <p>Keys of the same format can be compared as numbers: a pre-release is lower than its release.</p>
+ */
+final class JavaVersionParser {
+
+    /**
+     * Returned for values which are not a Java version at all.
+     */
+    static final long INVALID = -1L;
+
+    private static final int FEATURE_SHIFT = 48;
+    private static final int INTERIM_SHIFT = 36;
+    private static final int UPDATE_SHIFT = 24;
+    private static final int PATCH_SHIFT = 12;
+
+    private static final long FEATURE_MAX = 0x7fff;
+    private static final long COMPONENT_MAX = 0xfff;
+
+    /**
+     * Set for releases, not for pre-releases, so that releases sort after their pre-releases.
+     */
+    private static final long RELEASE_FLAG = 1L << 1;
+    /**
+     * Set for the legacy {@code 1.x} format.
+     */
+    private static final long LEGACY_FLAG = 1L;
+
+    private static final long FEATURE_AND_INTERIM_MASK =
+            FEATURE_MAX << FEATURE_SHIFT | COMPONENT_MAX << INTERIM_SHIFT;
+
+    private JavaVersionParser() {
+    }
+
+    /**
+     * @return the key of the version, or {@link #INVALID} if it does not start with a number.
+     */
+    static long parse(CharSequence version) {
+        final int length = version.length();
+        // Up to four numbers separated by dots, legacy versions only have three
+        long first = 0;
+        long second = 0;
+        long third = 0;
+        long fourth = 0;
+        int components = 0;
+        int i = 0;
+        while (i < length && components < 4) {
+            int start = i;
+            long value = 0;
+            while (i < length && isDigit(version.charAt(i))) {
+                value = Math.min(value * 10 + version.charAt(i) - '0', FEATURE_MAX);
+                i++;
+            }
+            if (i == start) {
+                break;
+            }
+            switch (components++) {
+                case 0: first = value; break;
+                case 1: second = value; break;
+                case 2: third = value; break;
+                default: fourth = value; break;
+            }
+            if (i < length && version.charAt(i) == '.' && i + 1 < length && isDigit(version.charAt(i + 1))) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        if (components == 0) {
+            return INVALID;
+        }
+
+        if (first == 1 && components > 1) {
+            // 1.8.0_66: the update comes after the underscore
+            long update = 0;
+            if (i < length && version.charAt(i) == '_') {
+                i++;
+                while (i < length && isDigit(version.charAt(i))) {
+                    update = Math.min(update * 10 + version.charAt(i) - '0', COMPONENT_MAX);
+                    i++;
+                }
+            }
+            return key(second, 0, update, third, isRelease(version, i)) | LEGACY_FLAG;
+        }
+        return key(first, second, third, fourth, isRelease(version, i));
+    }
+
+    private static long key(long feature, long interim, long update, long patch, boolean release) {
+        return Math.min(feature, FEATURE_MAX) << FEATURE_SHIFT
+                | Math.min(interim, COMPONENT_MAX) << INTERIM_SHIFT
+                | Math.min(update, COMPONENT_MAX) << UPDATE_SHIFT
+                | Math.min(patch, COMPONENT_MAX) << PATCH_SHIFT
+                | (release ? RELEASE_FLAG : 0);
+    }
+
+    /**
+     * A {@code -} before any {@code +} starts a pre-release identifier, like in {@code 21-ea} or
+     * {@code 1.9.0-ea}. After a {@code +}, it is only an optional build information, like in {@code 17.0.9+9-LTS}.
+     */
+    private static boolean isRelease(CharSequence version, int from) {
+        for (int i = from; i < version.length(); i++) {
+            char c = version.charAt(i);
+            if (c == '+') {
+                return true;
+            }
+            if (c == '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    static int feature(long key) {
+        return (int) (key >>> FEATURE_SHIFT & FEATURE_MAX);
+    }
+
+    static int interim(long key) {
+        return (int) (key >>> INTERIM_SHIFT & COMPONENT_MAX);
+    }
+
+    static int update(long key) {
+        return (int) (key >>> UPDATE_SHIFT & COMPONENT_MAX);
+    }
+
+    static int patch(long key) {
+        return (int) (key >>> PATCH_SHIFT & COMPONENT_MAX);
+    }
+
+    static boolean isPreRelease(long key) {
+        return (key & RELEASE_FLAG) == 0;
+    }
+
+    static boolean isLegacy(long key) {
+        return (key & LEGACY_FLAG) != 0;
+    }
+
+    /**
+     * @return true if both versions have the same feature and interim numbers, 1.8.0_66 and 1.8.0_110 for
+     * instance, or 11.0.2 and 11.0.21.
+     */
+    static boolean sameFeatureAndInterim(long key, long otherKey) {
+        return key != INVALID && otherKey != INVALID
+                && (key & FEATURE_AND_INTERIM_MASK) == (otherKey & FEATURE_AND_INTERIM_MASK);
+    }
+}
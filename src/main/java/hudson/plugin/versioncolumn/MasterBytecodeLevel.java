@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import javax.annotation.CheckForNull;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds the master bytecode level once it has been computed.
+ * <p>The value can only change when Jenkins core or the installed plugins change, so it is computed at most once
+ * per JVM, and then only raised when a plugin compiled for a newer bytecode level is dynamically loaded, see
+ * {@link #raise(BytecodeLevelDetector.Detection)}.</p>
+ */
+class MasterBytecodeLevel extends JVMVersionComparator.MasterBytecodeMajorVersionNumberGetter {
+
+    private static final Logger LOGGER = Logger.getLogger(MasterBytecodeLevel.class.getName());
+
+    static final MasterBytecodeLevel INSTANCE =
+            new MasterBytecodeLevel(new JVMVersionComparator.MasterBytecodeMajorVersionNumberGetter());
+
+    /**
+     * Also takes the jars of the installed plugins into account.
+     */
+    static final MasterBytecodeLevel WITH_PLUGINS =
+            new MasterBytecodeLevel(new JVMVersionComparator.MasterAndPluginsBytecodeMajorVersionNumberGetter());
+
+    /**
+     * Marker for "not computed yet", no class file can have a major version of 0.
+     */
+    private static final int UNKNOWN = 0;
+
+    private final JVMVersionComparator.MasterBytecodeMajorVersionNumberGetter delegate;
+    private final AtomicLong computations = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private volatile int level = UNKNOWN;
+    private volatile boolean requested;
+    @CheckForNull
+    private volatile BytecodeLevelDetector.Detection detection;
+
+    @VisibleForTesting
+    MasterBytecodeLevel(JVMVersionComparator.MasterBytecodeMajorVersionNumberGetter delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public int get() {
+        int current = level;
+        if (current != UNKNOWN) {
+            cacheHits.incrementAndGet();
+            return current;
+        }
+        synchronized (this) {
+            current = level;
+            if (current == UNKNOWN) {
+                requested = true;
+                current = delegate.get();
+                computations.incrementAndGet();
+                level = current;
+                detection = delegate.getLastDetection();
+                LOGGER.log(Level.INFO, "Master bytecode level computed: {0}", detection != null ? detection : current);
+            } else {
+                cacheHits.incrementAndGet();
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Raises the level if it was already computed and the given one is higher, like when a plugin compiled for a
+     * newer bytecode level is dynamically loaded.
+     * <p>Synchronized so that it happens after a computation running concurrently, and is not lost.</p>
+     *
+     * @return true if the level changed.
+     */
+    synchronized boolean raise(BytecodeLevelDetector.Detection higher) {
+        if (level == UNKNOWN || higher.getMajorVersion() <= level) {
+            return false;
+        }
+        level = higher.getMajorVersion();
+        detection = higher;
+        VerdictCache.INSTANCE.invalidate();
+        LOGGER.log(Level.INFO, "Master bytecode level raised to {0} after {1} computation(s) and {2} cache hit(s)",
+                   new Object[]{higher, computations.get(), cacheHits.get()});
+        return true;
+    }
+
+    /**
+     * @return true once the level has been asked for, even if it is still being computed.
+     */
+    boolean isRequested() {
+        return requested;
+    }
+
+    @Override
+    @CheckForNull
+    BytecodeLevelDetector.Detection getLastDetection() {
+        return detection;
+    }
+
+    /**
+     * @return how many times the master bytecode level was actually computed.
+     */
+    long getComputationCount() {
+        return computations.get();
+    }
+
+    /**
+     * @return how many times the master bytecode level was served without computing it.
+     */
+    long getCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    @Override
+    public String toString() {
+        BytecodeLevelDetector.Detection current = detection;
+        return "level=" + level + ", strategy=" + (current != null ? current.getStrategy() : "unknown")
+                + ", computations=" + getComputationCount() + ", cacheHits=" + getCacheHitCount();
+    }
+}
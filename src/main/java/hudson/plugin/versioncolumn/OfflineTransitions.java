@@ -0,0 +1,314 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+import com.google.common.annotations.VisibleForTesting;
+import jenkins.util.Timer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Takes agents offline at a bounded pace, so that an incompatibility found on the whole fleet at once, like after an
+ * upgrade of the master, does not disconnect every agent in the same second. Agents are brought back online through
+ * the same queue once compatible again.
+ * <p>At most {@link #MAX_PER_SECOND} agents are taken offline per second, in the order they were found. Within
+ * {@link #WINDOW}, the agents taken offline may only hold up to {@link #MAX_LABEL_PERCENT} of the executors of each
+ * of their labels, except for the first one of each label so that small labels are not blocked. Agents which went
+ * offline, or reconnected, before their turn are skipped. Bringing agents back online is only bounded by the rate.</p>
+ */
+final class OfflineTransitions {
+
+    private static final Logger LOGGER = Logger.getLogger(OfflineTransitions.class.getName());
+
+    /**
+     * Maximum number of agents taken offline per second.
+     */
+    static final int MAX_PER_SECOND = Integer.getInteger(OfflineTransitions.class.getName() + ".maxPerSecond", 10);
+
+    /**
+     * Maximum percentage of the executors of a label taken offline within the {@link #WINDOW}.
+     */
+    static final int MAX_LABEL_PERCENT = Integer.getInteger(OfflineTransitions.class.getName() + ".maxLabelPercent", 20);
+
+    /**
+     * Window of the label percentage, in milliseconds.
+     */
+    static final long WINDOW = Long.getLong(OfflineTransitions.class.getName() + ".window", TimeUnit.MINUTES.toMillis(5));
+
+    static final OfflineTransitions INSTANCE = new OfflineTransitions(MAX_PER_SECOND, MAX_LABEL_PERCENT, WINDOW);
+
+    private final int maxPerSecond;
+    private final int maxLabelPercent;
+    private final long window;
+
+    /**
+     * Transitions waiting for their turn, in the order they were requested, one per agent.
+     */
+    private final Map<Object, Transition> pending = new LinkedHashMap<>();
+    /**
+     * Transitions done within the window, oldest first.
+     */
+    private final Deque<Done> done = new ArrayDeque<>();
+    /**
+     * Executors taken offline within the window, per label.
+     */
+    private final Map<String, Integer> offlineExecutors = new HashMap<>();
+    private long completed;
+    private long skipped;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    @VisibleForTesting
+    OfflineTransitions(int maxPerSecond, int maxLabelPercent, long window) {
+        this.maxPerSecond = Math.max(1, maxPerSecond);
+        this.maxLabelPercent = Math.max(0, Math.min(100, maxLabelPercent));
+        this.window = Math.max(0, window);
+    }
+
+    /**
+     * Runs the transition when its turn comes, unless the agent is already waiting for the same one. A transition
+     * the other way round is replaced, keeping its turn.
+     *
+     * @param agent identifies the agent, usually its {@link hudson.model.Computer}.
+     * @return true if the transition is pending, false if the agent was already waiting for the same one.
+     */
+    boolean submit(Object agent, Transition transition) {
+        if (!add(agent, transition)) {
+            return false;
+        }
+        schedule();
+        return true;
+    }
+
+    @VisibleForTesting
+    synchronized boolean add(Object agent, Transition transition) {
+        final Transition current = pending.get(agent);
+        if (current != null && current.online == transition.online) {
+            return false;
+        }
+        pending.put(agent, transition);
+        return true;
+    }
+
+    /**
+     * Drops the transition if it is still pending, like when the agent does not need to be taken offline anymore.
+     *
+     * @return true if it was pending.
+     */
+    synchronized boolean cancel(Object agent, Transition transition) {
+        return pending.remove(agent, transition);
+    }
+
+    /**
+     * @return true if the agent waits to be taken offline.
+     */
+    synchronized boolean isPending(Object agent) {
+        final Transition transition = pending.get(agent);
+        return transition != null && !transition.online;
+    }
+
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return how many agents were taken offline, or back online.
+     */
+    synchronized long getCompletedCount() {
+        return completed;
+    }
+
+    /**
+     * @return how many agents went offline, or reconnected, before their turn.
+     */
+    synchronized long getSkippedCount() {
+        return skipped;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            Timer.get().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    tick();
+                }
+            }, 0, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void tick() {
+        try {
+            final List<Transition> due = due(System.currentTimeMillis());
+            for (Transition transition : due) {
+                try {
+                    transition.run();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to take an agent offline", e);
+                }
+            }
+            if (!due.isEmpty()) {
+                LOGGER.log(Level.INFO, "Took {0} agent(s) offline or back online, {1} so far, {2} still pending",
+                           new Object[]{due.size(), getCompletedCount(), getPendingCount()});
+            }
+        } finally {
+            if (getPendingCount() > 0) {
+                Timer.get().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        tick();
+                    }
+                }, 1, TimeUnit.SECONDS);
+            } else {
+                scheduled.set(false);
+                // A transition submitted meanwhile may have seen the tick still scheduled
+                if (getPendingCount() > 0) {
+                    schedule();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the transitions to run now, which are not pending anymore.
+     */
+    @VisibleForTesting
+    synchronized List<Transition> due(long now) {
+        while (!done.isEmpty() && now - done.peekFirst().time >= window) {
+            final Done expired = done.pollFirst();
+            for (String label : expired.labels) {
+                final Integer offline = offlineExecutors.get(label);
+                if (offline == null) {
+                    continue;
+                }
+                final int remaining = offline - expired.executors;
+                if (remaining > 0) {
+                    offlineExecutors.put(label, remaining);
+                } else {
+                    offlineExecutors.remove(label);
+                }
+            }
+        }
+        final List<Transition> due = new ArrayList<>();
+        final Iterator<Transition> it = pending.values().iterator();
+        while (it.hasNext() && due.size() < maxPerSecond) {
+            final Transition transition = it.next();
+            if (transition.isStale()) {
+                it.remove();
+                skipped++;
+                continue;
+            }
+            if (!withinLabelLimits(transition)) {
+                continue;
+            }
+            it.remove();
+            // Agents without executors, and those brought back online, do not count against the labels
+            if (transition.executors > 0) {
+                for (String label : transition.labelExecutors.keySet()) {
+                    final Integer offline = offlineExecutors.get(label);
+                    offlineExecutors.put(label, (offline != null ? offline : 0) + transition.executors);
+                }
+                done.addLast(new Done(now, transition));
+            }
+            completed++;
+            due.add(transition);
+        }
+        return due;
+    }
+
+    private boolean withinLabelLimits(Transition transition) {
+        for (Map.Entry<String, Integer> label : transition.labelExecutors.entrySet()) {
+            final Integer offline = offlineExecutors.get(label.getKey());
+            if (offline != null && offline > 0
+                    && (long) (offline + transition.executors) * 100 > (long) label.getValue() * maxLabelPercent) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "pending=" + pending.size() + ", completed=" + completed + ", skipped=" + skipped;
+    }
+
+    /**
+     * Takes one agent offline, or back online.
+     */
+    abstract static class Transition {
+        private final boolean online;
+        private final int executors;
+        private final Map<String, Integer> labelExecutors;
+
+        /**
+         * Takes the agent offline.
+         *
+         * @param executors      number of executors of the agent.
+         * @param labelExecutors total number of executors of each label of the agent.
+         */
+        Transition(int executors, Map<String, Integer> labelExecutors) {
+            this.online = false;
+            this.executors = Math.max(0, executors);
+            this.labelExecutors = Collections.unmodifiableMap(new HashMap<>(labelExecutors));
+        }
+
+        /**
+         * Brings the agent back online.
+         */
+        Transition() {
+            this.online = true;
+            this.executors = 0;
+            this.labelExecutors = Collections.emptyMap();
+        }
+
+        /**
+         * @return true if the transition is not needed anymore.
+         */
+        abstract boolean isStale();
+
+        abstract void run();
+    }
+
+    private static final class Done {
+        private final long time;
+        private final int executors;
+        private final Iterable<String> labels;
+
+        Done(long time, Transition transition) {
+            this.time = time;
+            this.executors = transition.executors;
+            this.labels = transition.labelExecutors.keySet();
+        }
+    }
+}
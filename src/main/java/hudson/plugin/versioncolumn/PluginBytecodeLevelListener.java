@@ -0,0 +1,136 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+import com.google.common.annotations.VisibleForTesting;
+import hudson.ExtensionList;
+import hudson.ExtensionListListener;
+import hudson.PluginWrapper;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Descriptor;
+import jenkins.model.Jenkins;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps {@link MasterBytecodeLevel#WITH_PLUGINS} up to date when plugins are dynamically loaded, by scanning only
+ * the jars of the plugins which were not scanned yet.
+ * <p>Plugins cannot be updated or removed without a restart, so the level can only go up.</p>
+ */
+final class PluginBytecodeLevelListener {
+
+    private static final Logger LOGGER = Logger.getLogger(PluginBytecodeLevelListener.class.getName());
+
+    /**
+     * Plugins whose jars are already part of {@link MasterBytecodeLevel#WITH_PLUGINS}.
+     */
+    private static final Set<String> SCANNED = ConcurrentHashMap.newKeySet();
+
+    private PluginBytecodeLevelListener() {
+    }
+
+    static void scanned(Collection<PluginWrapper> plugins) {
+        for (PluginWrapper plugin : plugins) {
+            SCANNED.add(key(plugin));
+        }
+    }
+
+    /**
+     * @return the plugins whose classes are loaded, and may thus be sent to agents: disabled plugins, and those which
+     * failed to load, are left out.
+     */
+    static List<PluginWrapper> activePlugins() {
+        final List<PluginWrapper> active = new ArrayList<>();
+        for (PluginWrapper plugin : Jenkins.getInstance().getPluginManager().getPlugins()) {
+            if (plugin.isActive()) {
+                active.add(plugin);
+            }
+        }
+        return active;
+    }
+
+    private static String key(PluginWrapper plugin) {
+        return plugin.getShortName() + ':' + plugin.getVersion();
+    }
+
+    /**
+     * Dynamically loaded plugins refresh the extension lists.
+     */
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    public static void listenToExtensionsRefresh() {
+        ExtensionList.lookup(Descriptor.class).addListener(new ExtensionListListener() {
+            @Override
+            public void onChange() {
+                pluginsChanged();
+            }
+        });
+    }
+
+    static synchronized void pluginsChanged() {
+        if (!MasterBytecodeLevel.WITH_PLUGINS.isRequested()) {
+            // Nobody uses the plugins bytecode level, the first use will scan everything anyway
+            return;
+        }
+        if (scanAdded(MasterBytecodeLevel.WITH_PLUGINS, activePlugins(), BytecodeLevelIndex.get())) {
+            JVMVersionMonitor.reevaluate();
+        }
+    }
+
+    /**
+     * Scans the jars of the plugins which were not scanned yet, and raises the level if they need a newer one.
+     *
+     * @return true if the level was raised, the agents then need to be checked again.
+     */
+    @VisibleForTesting
+    static boolean scanAdded(MasterBytecodeLevel level, Collection<PluginWrapper> active, BytecodeLevelIndex index) {
+        final List<PluginWrapper> added = new ArrayList<>();
+        for (PluginWrapper plugin : active) {
+            if (!SCANNED.contains(key(plugin))) {
+                added.add(plugin);
+            }
+        }
+        if (added.isEmpty()) {
+            return false;
+        }
+
+        final List<Path> jars = PluginBytecodeScanner.jarsOf(added);
+        final PluginBytecodeScanner.Result result = PluginBytecodeScanner.scan(jars, index);
+        index.save();
+        scanned(added);
+        LOGGER.log(Level.FINE, "Scanned {0} new plugin(s), highest bytecode level: {1}",
+                   new Object[]{added.size(), result});
+
+        final BytecodeLevelDetector.Detection detection = new BytecodeLevelDetector.Detection(
+                BytecodeLevelDetector.Strategy.PLUGINS, result.getMajorVersion(), String.valueOf(result.getJar()));
+        return level.raise(detection);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+import hudson.PluginWrapper;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds the highest bytecode level among the jars of the installed plugins.
+ * <p>Jars are scanned in parallel, and only a sample of the class headers of each jar is read: a jar is almost
+ * always compiled for a single target.</p>
+ */
+final class PluginBytecodeScanner {
+
+    private static final Logger LOGGER = Logger.getLogger(PluginBytecodeScanner.class.getName());
+
+    /**
+     * Maximum number of class headers read per jar.
+     */
+    static final int SAMPLE_SIZE = Integer.getInteger(PluginBytecodeScanner.class.getName() + ".sampleSize", 16);
+
+    private static final int PARALLELISM = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Outcome of a scan, kept for diagnostics.
+     */
+    static final class Result {
+        private final int majorVersion;
+        @CheckForNull
+        private final Path jar;
+
+        Result(int majorVersion, @CheckForNull Path jar) {
+            this.majorVersion = majorVersion;
+            this.jar = jar;
+        }
+
+        /**
+         * @return the highest major version found, 0 if none.
+         */
+        int getMajorVersion() {
+            return majorVersion;
+        }
+
+        /**
+         * @return one of the jars with the highest major version, {@code null} if none.
+         */
+        @CheckForNull
+        Path getJar() {
+            return jar;
+        }
+
+        static Result max(Result a, Result b) {
+            return b.majorVersion > a.majorVersion ? b : a;
+        }
+
+        @Override
+        public String toString() {
+            return majorVersion + " (" + jar + ")";
+        }
+    }
+
+    private static final Result NONE = new Result(0, null);
+
+    private PluginBytecodeScanner() {
+    }
+
+    /**
+     * @return the jars of the plugins, including the libraries they bundle.
+     */
+    static List<Path> jarsOf(Collection<PluginWrapper> plugins) {
+        List<Path> jars = new ArrayList<>();
+        for (PluginWrapper plugin : plugins) {
+            jars.addAll(jarsOf(plugin));
+        }
+        return jars;
+    }
+
+    /**
+     * @return the jars below {@code WEB-INF/lib} of the exploded plugin.
+     */
+    static List<Path> jarsOf(PluginWrapper plugin) {
+        List<Path> jars = new ArrayList<>();
+        Path exploded = BytecodeLevelDetector.toPath(plugin.baseResourceURL);
+        if (exploded == null) {
+            return jars;
+        }
+        Path lib = exploded.resolve("WEB-INF").resolve("lib");
+        if (!Files.isDirectory(lib)) {
+            return jars;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(lib, "*.jar")) {
+            for (Path jar : stream) {
+                jars.add(jar);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not list the jars of " + plugin.getShortName(), e);
+        }
+        return jars;
+    }
+
+    /**
+     * @param index bytecode levels of the jars scanned before, {@code null} to read all jars.
+     */
+    static Result scan(List<Path> jars, @CheckForNull BytecodeLevelIndex index) {
+        if (jars.isEmpty()) {
+            return NONE;
+        }
+        final long start = System.nanoTime();
+        final ForkJoinPool pool = new ForkJoinPool(Math.min(PARALLELISM, jars.size()));
+        try {
+            Result result = pool.invoke(new ScanTask(jars, 0, jars.size(), index));
+            LOGGER.log(Level.FINE, "Scanned {0} jar(s) in {1} ms, highest bytecode level: {2}",
+                       new Object[]{jars.size(), (System.nanoTime() - start) / 1000000, result});
+            return result;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return the bytecode level recorded in the index if the jar did not change, or the scanned one otherwise.
+     */
+    static int scan(Path jar, @CheckForNull BytecodeLevelIndex index) {
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not read the attributes of " + jar, e);
+            return 0;
+        }
+        if (index != null) {
+            int known = index.lookup(jar, attributes);
+            if (known >= 0) {
+                return known;
+            }
+        }
+        int majorVersion = scan(jar);
+        if (index != null) {
+            index.put(jar, attributes, majorVersion);
+        }
+        return majorVersion;
+    }
+
+    /**
+     * @return the highest major version found in the sample of class headers, 0 if none could be read.
+     */
+    static int scan(Path jar) {
+        try (ClassFileHeaderReader reader = ClassFileHeaderReader.open(jar)) {
+            return reader.sampleMaxMajorVersion(SAMPLE_SIZE);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not scan " + jar, e);
+            return 0;
+        }
+    }
+
+    private static final class ScanTask extends RecursiveTask<Result> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Path> jars;
+        private final int from;
+        private final int to;
+        private final transient BytecodeLevelIndex index;
+
+        ScanTask(List<Path> jars, int from, int to, @CheckForNull BytecodeLevelIndex index) {
+            this.jars = jars;
+            this.from = from;
+            this.to = to;
+            this.index = index;
+        }
+
+        @Override
+        protected Result compute() {
+            if (to - from == 1) {
+                Path jar = jars.get(from);
+                return new Result(scan(jar, index), jar);
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask left = new ScanTask(jars, from, middle, index);
+            left.fork();
+            Result right = new ScanTask(jars, middle, to, index).compute();
+            return Result.max(left.join(), right);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+import com.google.common.annotations.VisibleForTesting;
+import hudson.Util;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stops calling an agent whose version probes keep timing out, so that it does not hold a probe slot for
+ * {@link AgentVersionsProbe#TIMEOUT} in every monitoring cycle.
+ * <p>After {@link #FAILURE_THRESHOLD} consecutive timeouts the circuit opens and the agent is skipped for
+ * {@link #BACKOFF}. A single probe is then let through: the circuit closes if it succeeds, and opens again for twice as
+ * long, up to {@link #MAX_BACKOFF}, if it times out as well.</p>
+ * <p>Agents are identified by any key, usually their {@link hudson.model.Computer}.</p>
+ */
+final class ProbeCircuitBreaker {
+
+    private static final Logger LOGGER = Logger.getLogger(ProbeCircuitBreaker.class.getName());
+
+    /**
+     * Number of consecutive timeouts opening the circuit.
+     */
+    static final int FAILURE_THRESHOLD = Integer.getInteger(ProbeCircuitBreaker.class.getName() + ".failureThreshold", 3);
+
+    /**
+     * How long an agent is skipped once its circuit opens, in milliseconds.
+     */
+    static final long BACKOFF = Long.getLong(ProbeCircuitBreaker.class.getName() + ".backoff", TimeUnit.HOURS.toMillis(2));
+
+    /**
+     * Upper bound of the back-off, which doubles every time the agent still does not answer, in milliseconds.
+     */
+    static final long MAX_BACKOFF = Long.getLong(ProbeCircuitBreaker.class.getName() + ".maxBackoff", TimeUnit.HOURS.toMillis(24));
+
+    private static final ConcurrentMap<Object, ProbeCircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    enum State {
+        /**
+         * The agent is probed.
+         */
+        CLOSED,
+        /**
+         * The agent is skipped until the back-off is elapsed.
+         */
+        OPEN,
+        /**
+         * A single probe of the agent is running to find out whether it answers again.
+         */
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long initialBackoff;
+    private final long maxBackoff;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long backoff;
+    /**
+     * When the circuit opened, or when the half-open probe started.
+     */
+    private long since;
+
+    @VisibleForTesting
+    ProbeCircuitBreaker(int failureThreshold, long backoff, long maxBackoff) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.initialBackoff = Math.max(0, backoff);
+        this.maxBackoff = Math.max(this.initialBackoff, maxBackoff);
+        this.backoff = this.initialBackoff;
+    }
+
+    /**
+     * @return true if the agent may be called now. Past the back-off, only the first caller is allowed, and the
+     * circuit becomes half-open.
+     */
+    synchronized boolean allow(long now) {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now - since < backoff) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                since = now;
+                return true;
+            default:
+                // A half-open probe which never completed, like when the agent disconnected, must not keep it open
+                if (now - since < backoff) {
+                    return false;
+                }
+                since = now;
+                return true;
+        }
+    }
+
+    /**
+     * Records an answer of the agent, closing the circuit.
+     */
+    synchronized void success() {
+        state = State.CLOSED;
+        failures = 0;
+        backoff = initialBackoff;
+    }
+
+    /**
+     * Records a probe of the agent which timed out.
+     */
+    synchronized void failure(long now) {
+        if (state == State.HALF_OPEN) {
+            backoff = Math.min(maxBackoff, backoff * 2);
+            state = State.OPEN;
+            since = now;
+        } else if (++failures >= failureThreshold) {
+            state = State.OPEN;
+            since = now;
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return how long until the agent is called again, in milliseconds, 0 if it is not skipped.
+     */
+    synchronized long remaining(long now) {
+        return state == State.OPEN ? Math.max(0, since + backoff - now) : 0;
+    }
+
+    /**
+     * @throws OpenException if the circuit of the agent is open, or half-open with its probe already running.
+     */
+    static void allow(Object agent, String name) throws OpenException {
+        final ProbeCircuitBreaker breaker = BREAKERS.get(agent);
+        if (breaker != null && !breaker.allow(System.currentTimeMillis())) {
+            throw new OpenException(name);
+        }
+    }
+
+    /**
+     * @return true if the agent is skipped until its back-off is elapsed.
+     */
+    static boolean isOpen(Object agent) {
+        final ProbeCircuitBreaker breaker = BREAKERS.get(agent);
+        return breaker != null && breaker.remaining(System.currentTimeMillis()) > 0;
+    }
+
+    static void success(Object agent) {
+        final ProbeCircuitBreaker breaker = BREAKERS.get(agent);
+        if (breaker != null) {
+            breaker.success();
+        }
+    }
+
+    static void timeout(Object agent, String name) {
+        ProbeCircuitBreaker breaker = BREAKERS.get(agent);
+        if (breaker == null) {
+            final ProbeCircuitBreaker created = new ProbeCircuitBreaker(FAILURE_THRESHOLD, BACKOFF, MAX_BACKOFF);
+            breaker = BREAKERS.putIfAbsent(agent, created);
+            if (breaker == null) {
+                breaker = created;
+            }
+        }
+        final long now = System.currentTimeMillis();
+        breaker.failure(now);
+        if (breaker.getState() == State.OPEN) {
+            LOGGER.log(Level.WARNING, "{0} did not answer the version probes, skipping it for {1}",
+                       new Object[]{name, Util.getTimeSpanString(breaker.remaining(now))});
+        }
+    }
+
+    /**
+     * @return a description of the circuit of the agent for the UI, {@code null} if it is closed.
+     */
+    @CheckForNull
+    static String status(Object agent) {
+        final ProbeCircuitBreaker breaker = BREAKERS.get(agent);
+        if (breaker == null) {
+            return null;
+        }
+        switch (breaker.getState()) {
+            case OPEN:
+                return Messages.ProbeCircuitBreaker_Open(
+                        Util.getTimeSpanString(breaker.remaining(System.currentTimeMillis())));
+            case HALF_OPEN:
+                return Messages.ProbeCircuitBreaker_HalfOpen();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Closes the circuit of the agent, like when it reconnects.
+     */
+    static void forget(Object agent) {
+        BREAKERS.remove(agent);
+    }
+
+    static void retain(Collection<?> agents) {
+        BREAKERS.keySet().retainAll(agents);
+    }
+
+    /**
+     * Thrown instead of calling an agent whose circuit is open.
+     */
+    static final class OpenException extends IOException {
+        OpenException(String name) {
+            super(name + " is not probed until its back-off is elapsed");
+        }
+    }
+}
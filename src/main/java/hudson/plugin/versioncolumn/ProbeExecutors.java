@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+import javax.annotation.CheckForNull;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Threads running the agent probes of {@link ProbeScheduler}, per the {@link #MODE} system property:
+ * <ul>
+ *     <li>{@code remoting}, the default: {@link hudson.model.Computer#threadPoolForRemoting}, shared with the rest of
+ *     Jenkins.</li>
+ *     <li>{@code virtual}: a virtual thread per probe when the runtime supports them, Java 21 or later, so that
+ *     thousands of probes waiting for their agent do not hold thousands of OS threads. The concurrency of the
+ *     scheduler is then raised to {@link ProbeScheduler#VIRTUAL_CONCURRENCY}. Otherwise, a {@code platform} pool.</li>
+ *     <li>{@code platform}: a pool of at most {@link #PLATFORM_THREADS} threads.</li>
+ * </ul>
+ * <p>Virtual threads are looked up by reflection, this plugin being built for Java 8.</p>
+ */
+final class ProbeExecutors {
+
+    private static final Logger LOGGER = Logger.getLogger(ProbeExecutors.class.getName());
+
+    static final String MODE = System.getProperty(ProbeExecutors.class.getName() + ".mode", "remoting");
+
+    /**
+     * Maximum number of threads of the {@code platform} pool, whatever the concurrency of the scheduler.
+     */
+    static final int PLATFORM_THREADS = Integer.getInteger(ProbeExecutors.class.getName() + ".platformThreads", 32);
+
+    private static final String THREAD_NAME = "Agent versions probe #";
+
+    private ProbeExecutors() {
+    }
+
+    /**
+     * @return {@code Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(...).factory())}, or {@code null} if
+     * virtual threads are not available.
+     */
+    @CheckForNull
+    static ExecutorService virtualThreads() {
+        try {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, THREAD_NAME, 1L);
+            final ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            // Java 19 and 20 without --enable-preview
+            LOGGER.log(Level.FINE, "Virtual threads are not enabled", e.getCause());
+            return null;
+        }
+    }
+
+    static ExecutorService platformThreads(int threads) {
+        final int size = Math.max(1, threads);
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, THREAD_NAME + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
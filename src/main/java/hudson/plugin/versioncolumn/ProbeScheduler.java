@@ -0,0 +1,250 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+import com.google.common.annotations.VisibleForTesting;
+import hudson.model.Computer;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs agent probes with a bounded concurrency, so that probing thousands of agents does not start thousands of
+ * remoting threads at once.
+ * <p>Waiting probes are run in FIFO order, except that probes of newly connected agents go first.</p>
+ * <p>The threads running the probes are selected by {@link ProbeExecutors}.</p>
+ */
+final class ProbeScheduler {
+
+    private static final Logger LOGGER = Logger.getLogger(ProbeScheduler.class.getName());
+
+    /**
+     * Maximum number of probes running at the same time.
+     */
+    static final int CONCURRENCY = Integer.getInteger(ProbeScheduler.class.getName() + ".concurrency", 32);
+
+    /**
+     * Maximum number of probes running at the same time on virtual threads, which cost no OS thread while waiting for
+     * their agent.
+     */
+    static final int VIRTUAL_CONCURRENCY = Integer.getInteger(ProbeScheduler.class.getName() + ".virtualConcurrency", 10000);
+
+    static final ProbeScheduler INSTANCE = create(ProbeExecutors.MODE);
+
+    private final int concurrency;
+    private final Executor executor;
+    private final Queue<Probe<?>> priorityQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<Probe<?>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger maxQueued = new AtomicInteger();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    @VisibleForTesting
+    ProbeScheduler(int concurrency, Executor executor) {
+        this.concurrency = Math.max(1, concurrency);
+        this.executor = executor;
+    }
+
+    /**
+     * @param mode see {@link ProbeExecutors#MODE}.
+     */
+    static ProbeScheduler create(String mode) {
+        if ("virtual".equalsIgnoreCase(mode)) {
+            final ExecutorService virtual = ProbeExecutors.virtualThreads();
+            if (virtual != null) {
+                final int concurrency = Math.max(CONCURRENCY, VIRTUAL_CONCURRENCY);
+                LOGGER.log(Level.FINE, "Running up to {0} agent probes at a time on virtual threads", concurrency);
+                return new ProbeScheduler(concurrency, virtual);
+            }
+            LOGGER.log(Level.INFO, "Virtual threads are not supported by Java {0}, running agent probes on at most {1} threads",
+                       new Object[]{System.getProperty("java.version"), platformConcurrency()});
+            return platform();
+        }
+        if ("platform".equalsIgnoreCase(mode)) {
+            return platform();
+        }
+        if (!"remoting".equalsIgnoreCase(mode)) {
+            LOGGER.log(Level.WARNING, "Unknown probe executor mode ''{0}'', using remoting", mode);
+        }
+        return new ProbeScheduler(CONCURRENCY, Computer.threadPoolForRemoting);
+    }
+
+    private static ProbeScheduler platform() {
+        final int threads = platformConcurrency();
+        return new ProbeScheduler(threads, ProbeExecutors.platformThreads(threads));
+    }
+
+    private static int platformConcurrency() {
+        return Math.max(1, Math.min(CONCURRENCY, ProbeExecutors.PLATFORM_THREADS));
+    }
+
+    /**
+     * @param priority true for newly connected agents, which are probed before the already known ones.
+     */
+    <T> Future<T> submit(Callable<T> task, boolean priority) {
+        final Probe<T> probe = new Probe<>(task);
+        final int depth = queued.incrementAndGet();
+        updateMax(maxQueued, depth);
+        (priority ? priorityQueue : queue).add(probe);
+        drain();
+        return probe;
+    }
+
+    private void drain() {
+        while (true) {
+            final int current = running.get();
+            if (current >= concurrency) {
+                return;
+            }
+            if (!running.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            final Probe<?> next = poll();
+            if (next == null) {
+                running.decrementAndGet();
+                // A probe submitted meanwhile may have seen no free slot
+                if (priorityQueue.isEmpty() && queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            next.run();
+                        } finally {
+                            running.decrementAndGet();
+                            drain();
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                running.decrementAndGet();
+                next.cancel(false);
+                LOGGER.log(Level.WARNING, "Could not run a probe", e);
+                return;
+            }
+        }
+    }
+
+    private Probe<?> poll() {
+        Probe<?> next = priorityQueue.poll();
+        if (next == null) {
+            next = queue.poll();
+        }
+        if (next != null) {
+            queued.decrementAndGet();
+            final long wait = System.nanoTime() - next.submitted;
+            started.incrementAndGet();
+            totalWaitNanos.addAndGet(wait);
+            updateMax(maxWaitNanos, wait);
+        }
+        return next;
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        int current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    /**
+     * @return how many probes are waiting for a free slot.
+     */
+    int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * @return the highest number of probes which waited at the same time.
+     */
+    int getMaxQueueDepth() {
+        return maxQueued.get();
+    }
+
+    /**
+     * @return the maximum number of probes running at the same time.
+     */
+    int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @return how many probes are running.
+     */
+    int getRunning() {
+        return running.get();
+    }
+
+    /**
+     * @return the average time probes waited for a free slot, in milliseconds.
+     */
+    long getAverageWaitMillis() {
+        final long count = started.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / count / 1000000;
+    }
+
+    /**
+     * @return the longest time a probe waited for a free slot, in milliseconds.
+     */
+    long getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1000000;
+    }
+
+    @Override
+    public String toString() {
+        return "running=" + getRunning() + ", queued=" + getQueueDepth() + ", maxQueued=" + getMaxQueueDepth()
+                + ", averageWait=" + getAverageWaitMillis() + "ms, maxWait=" + getMaxWaitMillis() + "ms";
+    }
+
+    private static final class Probe<T> extends FutureTask<T> {
+        private final long submitted = System.nanoTime();
+
+        Probe(Callable<T> task) {
+            super(task);
+        }
+    }
+}
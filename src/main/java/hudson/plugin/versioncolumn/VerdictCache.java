@@ -0,0 +1,197 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017-, Baptiste Mathus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugin.versioncolumn;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import javax.annotation.CheckForNull;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers the compatibility verdicts of {@link JVMVersionComparator}: agents are many, but they only run a handful
+ * of distinct JVM versions.
+ * <p>Verdicts are keyed by comparison mode, master version or bytecode level, and agent version or bytecode level
+ * when known. The cache is bounded, the oldest verdicts being evicted first, and is cleared when the configuration or
+ * the master bytecode level changes.</p>
+ */
+final class VerdictCache {
+
+    private static final Logger LOGGER = Logger.getLogger(VerdictCache.class.getName());
+
+    /**
+     * Maximum number of verdicts kept.
+     */
+    static final int MAX_SIZE = Integer.getInteger(VerdictCache.class.getName() + ".maxSize", 256);
+
+    static final VerdictCache INSTANCE = new VerdictCache(MAX_SIZE);
+
+    private final int maxSize;
+    private final ConcurrentHashMap<Key, Boolean> verdicts = new ConcurrentHashMap<>();
+    private final Queue<Key> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @VisibleForTesting
+    VerdictCache(int maxSize) {
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    /**
+     * @return true if the agent JVM version is compatible with the master, per the comparison mode.
+     * @param agentBytecodeLevel see {@link JVMVersionComparator#JVMVersionComparator(String, String, int,
+     *                           JVMVersionComparator.ComparisonMode, JVMVersionComparator.MasterBytecodeMajorVersionNumberGetter)}.
+     */
+    boolean isCompatible(JVMVersionComparator.ComparisonMode mode, String masterVersion, String agentVersion,
+                         int agentBytecodeLevel) {
+        return isCompatible(mode, masterVersion, agentVersion, agentBytecodeLevel,
+                            JVMVersionComparator.ComparisonMode.RUNTIME_GREATER_OR_EQUAL_PLUGINS_BYTECODE == mode ?
+                                    MasterBytecodeLevel.WITH_PLUGINS : MasterBytecodeLevel.INSTANCE);
+    }
+
+    @VisibleForTesting
+    boolean isCompatible(JVMVersionComparator.ComparisonMode mode, String masterVersion, String agentVersion,
+                         JVMVersionComparator.MasterBytecodeMajorVersionNumberGetter masterBytecodeLevel) {
+        return isCompatible(mode, masterVersion, agentVersion, 0, masterBytecodeLevel);
+    }
+
+    @VisibleForTesting
+    boolean isCompatible(JVMVersionComparator.ComparisonMode mode, String masterVersion, String agentVersion,
+                         int agentBytecodeLevel,
+                         JVMVersionComparator.MasterBytecodeMajorVersionNumberGetter masterBytecodeLevel) {
+        final Key key;
+        if (!isBytecodeMode(mode)) {
+            key = new Key(mode, 0, masterVersion, agentVersion, 0);
+        } else if (agentBytecodeLevel > 0) {
+            // Agents running different versions of the same Java release share the same verdict
+            key = new Key(mode, masterBytecodeLevel.get(), null, null, agentBytecodeLevel);
+        } else {
+            key = new Key(mode, masterBytecodeLevel.get(), null, agentVersion, 0);
+        }
+        final Boolean cached = verdicts.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        final boolean compatible =
+                new JVMVersionComparator(masterVersion, agentVersion, agentBytecodeLevel, mode, masterBytecodeLevel)
+                        .isCompatible();
+        if (verdicts.putIfAbsent(key, compatible) == null) {
+            insertionOrder.add(key);
+            while (verdicts.size() > maxSize) {
+                Key eldest = insertionOrder.poll();
+                if (eldest == null) {
+                    break;
+                }
+                verdicts.remove(eldest);
+            }
+        }
+        return compatible;
+    }
+
+    private static boolean isBytecodeMode(JVMVersionComparator.ComparisonMode mode) {
+        return JVMVersionComparator.ComparisonMode.RUNTIME_GREATER_OR_EQUAL_MASTER_BYTECODE == mode
+                || JVMVersionComparator.ComparisonMode.RUNTIME_GREATER_OR_EQUAL_PLUGINS_BYTECODE == mode;
+    }
+
+    /**
+     * Forgets all verdicts, the counters being kept.
+     */
+    void invalidate() {
+        verdicts.clear();
+        insertionOrder.clear();
+        LOGGER.log(Level.FINE, "JVM version verdicts cleared after {0} hit(s) and {1} miss(es)",
+                   new Object[]{hits.get(), misses.get()});
+    }
+
+    int size() {
+        return verdicts.size();
+    }
+
+    /**
+     * @return how many verdicts were served from the cache.
+     */
+    long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return how many verdicts had to be computed.
+     */
+    long getMissCount() {
+        return misses.get();
+    }
+
+    private static final class Key {
+        private final JVMVersionComparator.ComparisonMode mode;
+        private final int masterBytecodeLevel;
+        @CheckForNull
+        private final String masterVersion;
+        @CheckForNull
+        private final String agentVersion;
+        private final int agentBytecodeLevel;
+        private final int hash;
+
+        Key(JVMVersionComparator.ComparisonMode mode, int masterBytecodeLevel, @CheckForNull String masterVersion,
+            @CheckForNull String agentVersion, int agentBytecodeLevel) {
+            this.mode = mode;
+            this.masterBytecodeLevel = masterBytecodeLevel;
+            this.masterVersion = masterVersion;
+            this.agentVersion = agentVersion;
+            this.agentBytecodeLevel = agentBytecodeLevel;
+            int h = mode.hashCode();
+            h = 31 * h + masterBytecodeLevel;
+            h = 31 * h + (masterVersion != null ? masterVersion.hashCode() : 0);
+            h = 31 * h + (agentVersion != null ? agentVersion.hashCode() : 0);
+            this.hash = 31 * h + agentBytecodeLevel;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash
+                    && mode == other.mode
+                    && masterBytecodeLevel == other.masterBytecodeLevel
+                    && agentBytecodeLevel == other.agentBytecodeLevel
+                    && (masterVersion == null ? other.masterVersion == null : masterVersion.equals(other.masterVersion))
+                    && (agentVersion == null ? other.agentVersion == null : agentVersion.equals(other.agentVersion));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -29,10 +29,6 @@ import hudson.model.Computer;
 import hudson.node_monitors.AbstractNodeMonitorDescriptor;
 import hudson.node_monitors.NodeMonitor;
 import hudson.remoting.Launcher;
-import hudson.slaves.OfflineCause;
-import jenkins.security.MasterToSlaveCallable;
-import java.io.IOException;
-import java.util.logging.Logger;
 import net.sf.json.JSONObject;
 import org.kohsuke.stapler.StaplerRequest;
 
@@ -52,17 +48,25 @@ public class VersionMonitor extends NodeMonitor {
     }
 
     @Extension
-    public static final AbstractNodeMonitorDescriptor<String> DESCRIPTOR = new AbstractNodeMonitorDescriptor<String>() {
+    public static final AbstractNodeMonitorDescriptor<String> DESCRIPTOR = new VersionMonitorDescriptor();
 
-        protected String monitor(Computer c) throws IOException, InterruptedException {
-            String version = c.getChannel().call(new SlaveVersion());
+    public static class VersionMonitorDescriptor extends AgentVersionsMonitorDescriptor<String> {
+
+        @Override
+        protected String extract(AgentVersions versions) {
+            return versions.getRemotingVersion();
+        }
+
+        @Override
+        protected void received(Computer c, String version) {
             if (version == null || !version.equals(masterVersion)) {
                 if (!isIgnored()) {
-                    markOffline(c, OfflineCause.create(Messages._VersionMonitor_OfflineCause()));
-                    LOGGER.warning(Messages.VersionMonitor_MarkedOffline(c.getName()));
+                    requestOffline(c, Messages._VersionMonitor_OfflineCause(),
+                                   Messages.VersionMonitor_MarkedOffline(c.getName()));
                 }
+            } else {
+                requestOnline(c);
             }
-            return version;
         }
 
         public String getDisplayName() {
@@ -73,21 +77,5 @@ public class VersionMonitor extends NodeMonitor {
         public NodeMonitor newInstance(StaplerRequest req, JSONObject formData) throws FormException {
             return new VersionMonitor();
         }
-    };
-
-    private static final class SlaveVersion extends MasterToSlaveCallable<String, IOException> {
-
-        private static final long serialVersionUID = 1L;
-
-        public String call() throws IOException {
-            try {
-                return Launcher.VERSION;
-            } catch (Throwable ex) {
-                // Older slave.jar won't have VERSION
-                return "< 1.335";
-            }
-        }
     }
-    
-    private static final Logger LOGGER = Logger.getLogger(VersionMonitor.class.getName());
 }
\ No newline at end of file
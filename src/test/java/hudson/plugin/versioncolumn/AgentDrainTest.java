@@ -0,0 +1,80 @@
+package hudson.plugin.versioncolumn;
+
+import hudson.model.Computer;
+import hudson.node_monitors.NodeMonitor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AgentDrainTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    /**
+     * Not registered, so that only the test drains agents for it, unlike the monitors of this plugin which Jenkins
+     * runs when agents connect.
+     */
+    public static class TestMonitor extends NodeMonitor {
+
+        static class TestDescriptor extends AgentVersionsMonitorDescriptor<String> {
+
+            @Override
+            public String getDisplayName() {
+                return "Test";
+            }
+
+            @Override
+            protected String extract(AgentVersions versions) {
+                return versions.getJavaVersion();
+            }
+        }
+    }
+
+    @Test
+    public void requestOnlineStopsTheDrainOfTheSameMonitor() throws Exception {
+        Computer c = j.createOnlineSlave().toComputer();
+        TestMonitor.TestDescriptor descriptor = new TestMonitor.TestDescriptor();
+
+        assertTrue(descriptor.requestOffline(c, Messages._JVMVersionMonitor_OfflineCause(), "incompatible",
+                                             AgentVersionsMonitorDescriptor.Enforcement.DRAIN));
+        awaitDraining(c, true);
+        assertTrue(AgentDrain.isDrainedBy(c, TestMonitor.TestDescriptor.class.getName()));
+        assertFalse(AgentDrain.isDrainedBy(c, JVMVersionMonitor.JvmVersionDescriptor.class.getName()));
+        assertTrue(c.isOnline());
+
+        assertTrue(descriptor.requestOnline(c));
+        awaitDraining(c, false);
+        assertTrue(c.isOnline());
+    }
+
+    @Test
+    public void requestOnlineCancelsAPendingDrain() throws Exception {
+        Computer c = j.createOnlineSlave().toComputer();
+        TestMonitor.TestDescriptor descriptor = new TestMonitor.TestDescriptor();
+
+        // Transitions do not run while the queue is held
+        synchronized (OfflineTransitions.INSTANCE) {
+            assertTrue(descriptor.requestOffline(c, Messages._JVMVersionMonitor_OfflineCause(), "incompatible",
+                                                 AgentVersionsMonitorDescriptor.Enforcement.DRAIN));
+            assertTrue(OfflineTransitions.INSTANCE.isPending(c));
+            assertTrue(descriptor.requestOnline(c));
+            assertFalse(OfflineTransitions.INSTANCE.isPending(c));
+        }
+        assertFalse(AgentDrain.isDraining(c));
+        assertFalse(descriptor.requestOnline(c));
+        assertTrue(c.isOnline());
+    }
+
+    private static void awaitDraining(Computer c, boolean draining) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (AgentDrain.isDraining(c) != draining && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertEquals(draining, AgentDrain.isDraining(c));
+    }
+}
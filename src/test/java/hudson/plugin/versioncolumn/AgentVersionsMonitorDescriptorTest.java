@@ -0,0 +1,42 @@
+package hudson.plugin.versioncolumn;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AgentVersionsMonitorDescriptorTest {
+
+    private static final long HOUR = 3600000;
+
+    @Test
+    public void offsetIsStableAndWithinInterval() {
+        assertEquals(AgentVersionsMonitorDescriptor.offset("agent-1", HOUR, 0),
+                     AgentVersionsMonitorDescriptor.offset("agent-1", HOUR, 0));
+        for (int i = 0; i < 1000; i++) {
+            long offset = AgentVersionsMonitorDescriptor.offset("agent-" + i, HOUR, HOUR - 1);
+            assertTrue(offset >= 0 && offset < HOUR);
+        }
+        assertEquals(0, AgentVersionsMonitorDescriptor.offset("agent-1", 0, 10));
+    }
+
+    @Test
+    public void offsetsAreSpread() {
+        int[] buckets = new int[4];
+        for (int i = 0; i < 4000; i++) {
+            buckets[(int) (AgentVersionsMonitorDescriptor.offset("agent-" + i, HOUR, 0) * 4 / HOUR)]++;
+        }
+        for (int bucket : buckets) {
+            assertTrue("uneven spread: " + bucket, bucket > 500);
+        }
+    }
+
+    @Test
+    public void enforcement() {
+        assertEquals(AgentVersionsMonitorDescriptor.Enforcement.OFFLINE, AgentVersionsMonitorDescriptor.Enforcement.parse(null));
+        assertEquals(AgentVersionsMonitorDescriptor.Enforcement.DRAIN, AgentVersionsMonitorDescriptor.Enforcement.parse("drain"));
+        assertEquals(AgentVersionsMonitorDescriptor.Enforcement.DRAIN_AND_DISCONNECT,
+                     AgentVersionsMonitorDescriptor.Enforcement.parse("drain-and-disconnect"));
+        assertEquals(AgentVersionsMonitorDescriptor.Enforcement.OFFLINE, AgentVersionsMonitorDescriptor.Enforcement.parse("whatever"));
+    }
+}
@@ -0,0 +1,100 @@
+package hudson.plugin.versioncolumn;
+
+import hudson.remoting.Launcher;
+import hudson.remoting.VirtualChannel;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AgentVersionsProbeTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void collectsAllVersions() throws Exception {
+        AgentVersions versions = AgentVersionsProbe.newCall().call();
+        assertEquals(Launcher.VERSION, versions.getRemotingVersion());
+        assertEquals(System.getProperty("java.version"), versions.getJavaVersion());
+        assertTrue(versions.getBytecodeLevel() >= JVMConstants.JAVA_8);
+    }
+
+    @Test
+    public void bytecodeLevel() {
+        assertEquals(JVMConstants.JAVA_8, AgentVersions.bytecodeLevel("52.0"));
+        assertEquals(65, AgentVersions.bytecodeLevel("65.0"));
+        assertEquals(0, AgentVersions.bytecodeLevel(""));
+        assertEquals(0, AgentVersions.bytecodeLevel(null));
+    }
+
+    @Test
+    public void concurrentCallersShareOneCall() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final CompletableFuture<AgentVersions> answer = new CompletableFuture<>();
+        final VirtualChannel channel = channel(calls, answer);
+        final Object agent = new Object();
+        final long coalesced = AgentVersionsProbe.getCoalescedCount();
+        final long reused = AgentVersionsProbe.getReusedCount();
+        Callable<AgentVersions> get = new Callable<AgentVersions>() {
+            @Override
+            public AgentVersions call() throws Exception {
+                return AgentVersionsProbe.get(agent, "agent", channel);
+            }
+        };
+
+        Future<AgentVersions> first = executor.submit(get);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (calls.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        Future<AgentVersions> second = executor.submit(get);
+        while (AgentVersionsProbe.getCoalescedCount() == coalesced && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(coalesced + 1, AgentVersionsProbe.getCoalescedCount());
+
+        AgentVersions versions = new AgentVersions("3.10", "1.8.0_144", JVMConstants.JAVA_8);
+        answer.complete(versions);
+        assertSame(versions, first.get(10, TimeUnit.SECONDS));
+        assertSame(versions, second.get(10, TimeUnit.SECONDS));
+        assertSame(versions, AgentVersionsProbe.get(agent, "agent", channel));
+        assertEquals(1, calls.get());
+        assertEquals(coalesced + 1, AgentVersionsProbe.getCoalescedCount());
+        assertEquals(reused + 1, AgentVersionsProbe.getReusedCount());
+    }
+
+    /**
+     * @return a channel answering every probe with the same future.
+     */
+    private static VirtualChannel channel(final AtomicInteger calls, final Future<AgentVersions> answer) {
+        return (VirtualChannel) Proxy.newProxyInstance(AgentVersionsProbeTest.class.getClassLoader(),
+                                                       new Class<?>[]{VirtualChannel.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("callAsync")) {
+                            calls.incrementAndGet();
+                            return answer;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
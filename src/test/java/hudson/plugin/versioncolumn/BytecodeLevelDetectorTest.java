@@ -0,0 +1,26 @@
+package hudson.plugin.versioncolumn;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class BytecodeLevelDetectorTest {
+
+    @Test
+    public void classFromDirectory() {
+        BytecodeLevelDetector.Detection detection = BytecodeLevelDetector.detect(BytecodeLevelDetectorTest.class);
+        assertNotNull(detection);
+        assertEquals(BytecodeLevelDetector.Strategy.DIRECTORY, detection.getStrategy());
+        assertTrue(detection.getMajorVersion() >= JVMConstants.JAVA_8);
+    }
+
+    @Test
+    public void classFromJar() {
+        BytecodeLevelDetector.Detection detection = BytecodeLevelDetector.detect(Test.class);
+        assertNotNull(detection);
+        assertEquals(BytecodeLevelDetector.Strategy.JAR, detection.getStrategy());
+        assertTrue(detection.getMajorVersion() >= JVMConstants.JAVA_5);
+    }
+}
@@ -0,0 +1,72 @@
+package hudson.plugin.versioncolumn;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class BytecodeLevelIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void survivesReload() throws IOException {
+        File file = new File(folder.getRoot(), BytecodeLevelIndex.FILE_NAME);
+        Path jar = folder.newFile("some.jar").toPath();
+
+        BytecodeLevelIndex index = new BytecodeLevelIndex(file, 16);
+        index.put(jar, attributes(jar), JVMConstants.JAVA_11);
+        index.save();
+
+        BytecodeLevelIndex reloaded = new BytecodeLevelIndex(file, 16);
+        reloaded.load();
+        assertEquals(JVMConstants.JAVA_11, reloaded.lookup(jar, attributes(jar)));
+    }
+
+    @Test
+    public void changedJarIsNotFound() throws IOException {
+        Path jar = folder.newFile("some.jar").toPath();
+        BytecodeLevelIndex index = new BytecodeLevelIndex(new File(folder.getRoot(), BytecodeLevelIndex.FILE_NAME), 16);
+        index.put(jar, attributes(jar), JVMConstants.JAVA_8);
+
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(attributes(jar).lastModifiedTime().toMillis() + 1000));
+        assertEquals(-1, index.lookup(jar, attributes(jar)));
+
+        index.retain(Collections.<Path>emptyList());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void corruptedIndexIsDiscarded() throws IOException {
+        File file = new File(folder.getRoot(), BytecodeLevelIndex.FILE_NAME);
+        Path jar = folder.newFile("some.jar").toPath();
+        BytecodeLevelIndex index = new BytecodeLevelIndex(file, 16);
+        index.put(jar, attributes(jar), JVMConstants.JAVA_8);
+        index.save();
+
+        Files.write(file.toPath(), "garbage".getBytes(StandardCharsets.UTF_8));
+        index.load();
+        assertEquals(0, index.size());
+
+        index.put(jar, attributes(jar), JVMConstants.JAVA_8);
+        index.save();
+        BytecodeLevelIndex rebuilt = new BytecodeLevelIndex(file, 16);
+        rebuilt.load();
+        assertEquals(JVMConstants.JAVA_8, rebuilt.lookup(jar, attributes(jar)));
+    }
+
+    private static BasicFileAttributes attributes(Path jar) throws IOException {
+        return Files.readAttributes(jar, BasicFileAttributes.class);
+    }
+}
@@ -0,0 +1,153 @@
+package hudson.plugin.versioncolumn;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ClassFileHeaderReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] classBytes(int major) {
+        byte[] bytes = new byte[512];
+        byte[] header = {(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe, 0, 3, 0, (byte) major};
+        System.arraycopy(header, 0, bytes, 0, header.length);
+        Arrays.fill(bytes, header.length, bytes.length, (byte) 42);
+        return bytes;
+    }
+
+    private File jar(int method) throws IOException {
+        File jar = folder.newFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            out.setComment("some comment");
+            put(out, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes("UTF-8"), method);
+            put(out, "a/First.class", classBytes(JVMConstants.JAVA_7), method);
+            put(out, "b/Second.class", classBytes(JVMConstants.JAVA_11), method);
+            put(out, "c/Tiny.class", new byte[]{(byte) 0xca, (byte) 0xfe}, method);
+            put(out, "META-INF/versions/12/b/Second.class", classBytes(JVMConstants.JAVA_12), method);
+            put(out, "module-info.class", classBytes(JVMConstants.JAVA_12), method);
+        }
+        return jar;
+    }
+
+    private static void put(ZipOutputStream out, String name, byte[] content, int method) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(method);
+        if (method == ZipEntry.STORED) {
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            entry.setSize(content.length);
+            entry.setCrc(crc.getValue());
+        }
+        out.putNextEntry(entry);
+        out.write(content);
+        out.closeEntry();
+    }
+
+    @Test
+    public void deflated() throws IOException {
+        assertHeaders(jar(ZipEntry.DEFLATED));
+    }
+
+    @Test
+    public void stored() throws IOException {
+        assertHeaders(jar(ZipEntry.STORED));
+    }
+
+    @Test
+    public void sampleSkipsMetaInfAndModuleInfo() throws IOException {
+        try (ClassFileHeaderReader reader = ClassFileHeaderReader.open(jar(ZipEntry.DEFLATED).toPath())) {
+            assertEquals(JVMConstants.JAVA_11, reader.sampleMaxMajorVersion(16));
+            assertEquals(JVMConstants.JAVA_7, reader.sampleMaxMajorVersion(1));
+        }
+    }
+
+    @Test
+    public void nameBeyondCentralDirectory() throws IOException {
+        File jar = jar(ZipEntry.DEFLATED);
+        // Name length of the first record
+        corrupt(jar, 28, (short) 0xffff);
+        try (ClassFileHeaderReader reader = ClassFileHeaderReader.open(jar.toPath())) {
+            assertCorrupted(reader, "a/First.class");
+        }
+    }
+
+    @Test
+    public void localHeaderBeyondEntries() throws IOException {
+        File jar = jar(ZipEntry.STORED);
+        // Local header offset of the first record
+        corrupt(jar, 42, Integer.MAX_VALUE);
+        try (ClassFileHeaderReader reader = ClassFileHeaderReader.open(jar.toPath())) {
+            assertCorrupted(reader, "META-INF/MANIFEST.MF");
+        }
+    }
+
+    @Test
+    public void entryDataBeyondEntries() throws IOException {
+        File jar = jar(ZipEntry.DEFLATED);
+        // Compressed size of the first record
+        corrupt(jar, 20, Integer.MAX_VALUE);
+        try (ClassFileHeaderReader reader = ClassFileHeaderReader.open(jar.toPath())) {
+            assertCorrupted(reader, "META-INF/MANIFEST.MF");
+        }
+    }
+
+    private static void assertCorrupted(ClassFileHeaderReader reader, String entryName) throws IOException {
+        try {
+            reader.read(entryName);
+            fail("Read " + entryName + " from a corrupted jar");
+        } catch (ZipException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Overwrites a field of the first central directory record.
+     */
+    private static void corrupt(File jar, int offset, Number value) throws IOException {
+        byte[] bytes = Files.readAllBytes(jar.toPath());
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int end = bytes.length - 4;
+        while (buffer.getInt(end) != 0x06054b50) {
+            end--;
+        }
+        int record = buffer.getInt(end + 16) + offset;
+        if (value instanceof Short) {
+            buffer.putShort(record, value.shortValue());
+        } else {
+            buffer.putInt(record, value.intValue());
+        }
+        Files.write(jar.toPath(), bytes);
+    }
+
+    private void assertHeaders(File jar) throws IOException {
+        try (ClassFileHeaderReader reader = ClassFileHeaderReader.open(jar.toPath())) {
+            ClassFileHeader first = reader.read("a/First.class");
+            assertTrue(first.isValid());
+            assertEquals(JVMConstants.JAVA_7, first.getMajorVersion());
+            assertEquals(3, first.getMinorVersion());
+
+            assertEquals(JVMConstants.JAVA_11, reader.read("b/Second.class").getMajorVersion());
+            assertNull(reader.read("c/Tiny.class"));
+            assertNull(reader.read("d/Missing.class"));
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package hudson.plugin.versioncolumn;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class JVMConstantsTest {
+
+    @Test
+    public void maxBytecodeLevel() {
+        assertEquals(45, JVMConstants.maxBytecodeLevel(1));
+        assertEquals(48, JVMConstants.maxBytecodeLevel(4));
+        assertEquals(JVMConstants.JAVA_8, JVMConstants.maxBytecodeLevel(8));
+        assertEquals(JVMConstants.JAVA_12, JVMConstants.maxBytecodeLevel(12));
+        assertEquals(65, JVMConstants.maxBytecodeLevel(21));
+        assertEquals(144, JVMConstants.maxBytecodeLevel(100));
+        assertEquals(JVMConstants.UNKNOWN_BYTECODE_LEVEL, JVMConstants.maxBytecodeLevel(0));
+    }
+
+    @Test
+    public void overrides() {
+        int[] levels = JVMConstants.bytecodeLevels("12=57, 40=90,whatever,3=,-1=50,300=1");
+        assertEquals(57, levels[12]);
+        assertEquals(90, levels[40]);
+        assertEquals(JVMConstants.JAVA_11, levels[11]);
+        assertEquals(47, levels[3]);
+        assertEquals(41, levels.length);
+    }
+}
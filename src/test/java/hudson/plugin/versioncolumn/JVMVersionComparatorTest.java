@@ -69,6 +69,9 @@ public class JVMVersionComparatorTest {
                 {"1.8.0", JVMConstants.JAVA_8},
                 {"1.8.0", JVMConstants.JAVA_7},
                 {"1.8.0", JVMConstants.JAVA_6},
+                {"11", JVMConstants.JAVA_11},
+                {"17.0.9+9", JVMConstants.JAVA_12},
+                {"99-ea", JVMConstants.JAVA_12},
         };
     }
 
@@ -77,6 +80,7 @@ public class JVMVersionComparatorTest {
                 {"1.7.0", JVMConstants.JAVA_8},
                 {"1.6.1", JVMConstants.JAVA_7},
                 {"1.5.3", JVMConstants.JAVA_6},
+                {"11.0.2", JVMConstants.JAVA_12},
         };
     }
 
@@ -107,11 +111,26 @@ public class JVMVersionComparatorTest {
                                             }).isNotCompatible());
     }
 
+    @Test
+    public void agentBytecodeLevelIsUsedWhenKnown() {
+        JVMVersionComparator.MasterBytecodeMajorVersionNumberGetter java11 =
+                new JVMVersionComparator.MasterBytecodeMajorVersionNumberGetter() {
+                    @Override
+                    public int get() {
+                        return JVMConstants.JAVA_11;
+                    }
+                };
+        JVMVersionComparator.ComparisonMode mode = JVMVersionComparator.ComparisonMode.RUNTIME_GREATER_OR_EQUAL_MASTER_BYTECODE;
+        assertTrue(new JVMVersionComparator("whatever", "not a version", JVMConstants.JAVA_11, mode, java11).isCompatible());
+        assertTrue(new JVMVersionComparator("whatever", "not a version", 99, mode, java11).isCompatible());
+        assertFalse(new JVMVersionComparator("whatever", "17", JVMConstants.JAVA_8, mode, java11).isCompatible());
+    }
+
     @Issue("JENKINS-53445")
     @Test
     public void shouldNotThrowNPEWhenJVMVersionIsNotRecognized() {
         JVMVersionComparator jvmVersionComparator =
-              new JVMVersionComparator("99.9", "99.9",
+              new JVMVersionComparator("0.9", "0.9",
                     JVMVersionComparator.ComparisonMode.RUNTIME_GREATER_OR_EQUAL_MASTER_BYTECODE);
         assertNotNull(jvmVersionComparator);
         assertFalse(jvmVersionComparator.isCompatible());
@@ -0,0 +1,124 @@
+package hudson.plugin.versioncolumn;
+
+import hudson.model.Computer;
+import hudson.model.ComputerSet;
+import hudson.remoting.Channel;
+import hudson.remoting.Launcher;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class JVMVersionMonitorTest {
+
+    private static final String MASTER_VERSION = System.getProperty("java.version");
+
+    /**
+     * Same Java release as the master, so only {@link JVMVersionComparator.ComparisonMode#EXACT_MATCH} finds it
+     * incompatible.
+     */
+    private static final String OTHER_BUILD = MASTER_VERSION + "-other";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void onlyNewTransitionsAreCounted() throws Exception {
+        Computer c = agentReporting(OTHER_BUILD);
+        JVMVersionMonitor exact = new JVMVersionMonitor(JVMVersionComparator.ComparisonMode.EXACT_MATCH, true);
+
+        // Transitions do not run while the queue is held
+        synchronized (OfflineTransitions.INSTANCE) {
+            assertEquals(JVMVersionMonitor.Change.OFFLINE, exact.reconcile(c, OTHER_BUILD));
+            assertTrue(OfflineTransitions.INSTANCE.isPending(c));
+            assertEquals(JVMVersionMonitor.Change.NONE, exact.reconcile(c, OTHER_BUILD));
+
+            // Saving the configuration checks the agents again, this one already waits for its turn
+            ComputerSet.getMonitors().replace(exact);
+            Map<JVMVersionMonitor.Change, Integer> changes = JVMVersionMonitor.reevaluate();
+            assertEquals(0, changes.get(JVMVersionMonitor.Change.OFFLINE).intValue());
+            assertEquals(0, changes.get(JVMVersionMonitor.Change.ONLINE).intValue());
+        }
+        awaitOffline(c, true);
+        assertTrue(IncompatibleAgentOfflineCause.isSetBy(c.getOfflineCause(),
+                                                         JVMVersionMonitor.JvmVersionDescriptor.class.getName()));
+
+        JVMVersionMonitor bytecode = new JVMVersionMonitor(
+                JVMVersionComparator.ComparisonMode.RUNTIME_GREATER_OR_EQUAL_MASTER_BYTECODE, true);
+        synchronized (OfflineTransitions.INSTANCE) {
+            assertEquals(JVMVersionMonitor.Change.ONLINE, bytecode.reconcile(c, OTHER_BUILD));
+            assertEquals(JVMVersionMonitor.Change.NONE, bytecode.reconcile(c, OTHER_BUILD));
+            ComputerSet.getMonitors().replace(bytecode);
+        }
+        awaitOffline(c, false);
+    }
+
+    @Test
+    public void reconcileKeepsIncompatibleAgentsOnlineIfConfigured() throws Exception {
+        Computer c = agentReporting(OTHER_BUILD);
+        JVMVersionMonitor monitor = new JVMVersionMonitor(JVMVersionComparator.ComparisonMode.EXACT_MATCH, false);
+        ComputerSet.getMonitors().replace(monitor);
+
+        assertEquals(JVMVersionMonitor.Change.NONE, monitor.reconcile(c, OTHER_BUILD));
+        assertEquals(JVMVersionMonitor.Change.NONE, monitor.reconcile(c, null));
+        assertFalse(OfflineTransitions.INSTANCE.isPending(c));
+        assertTrue(c.isOnline());
+    }
+
+    @Test
+    public void savingTheMonitorsChecksAgentsAgainWithoutCallingThem() throws Exception {
+        Computer c = agentReporting(OTHER_BUILD);
+        long calls = AgentVersionsProbe.getCallCount();
+
+        // Transitions do not run while the queue is held
+        synchronized (OfflineTransitions.INSTANCE) {
+            assertFalse(OfflineTransitions.INSTANCE.isPending(c));
+            // Saves nodeMonitors.xml, like submitting the configuration of the node monitors
+            ComputerSet.getMonitors().replace(new JVMVersionMonitor(JVMVersionComparator.ComparisonMode.EXACT_MATCH, true));
+            assertTrue(OfflineTransitions.INSTANCE.isPending(c));
+        }
+        awaitOffline(c, true);
+        assertEquals(calls, AgentVersionsProbe.getCallCount());
+    }
+
+    /**
+     * @return an agent whose known versions report that JVM version, as if it had been probed.
+     */
+    private Computer agentReporting(String javaVersion) throws Exception {
+        Computer c = j.createOnlineSlave().toComputer();
+        JVMVersionMonitor.JvmVersionDescriptor descriptor =
+                j.jenkins.getDescriptorByType(JVMVersionMonitor.JvmVersionDescriptor.class);
+        // Let the probe made on connection complete first
+        await(c, descriptor, MASTER_VERSION);
+        AgentVersions known = AgentVersionsProbe.known(c);
+        assertNotNull(known);
+        ((Channel) c.getChannel()).setProperty(AgentVersionsProbe.VERSIONS,
+                                               new AgentVersions(Launcher.VERSION, javaVersion, known.getBytecodeLevel()));
+        descriptor.connected(c);
+        await(c, descriptor, javaVersion);
+        return c;
+    }
+
+    private static void await(Computer c, JVMVersionMonitor.JvmVersionDescriptor descriptor, String javaVersion)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (!javaVersion.equals(descriptor.get(c)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertEquals(javaVersion, descriptor.get(c));
+    }
+
+    private static void awaitOffline(Computer c, boolean offline) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (c.isOffline() != offline && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertEquals(offline, c.isOffline());
+    }
+}
@@ -0,0 +1,66 @@
+package hudson.plugin.versioncolumn;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnitParamsRunner.class)
+public class JavaVersionParserTest {
+
+    private Object[] parametersForParse() {
+        return new Object[][]{
+                // version, feature, interim, update, patch, pre-release, legacy
+                {"1.8.0", 8, 0, 0, 0, false, true},
+                {"1.8.0_66", 8, 0, 66, 0, false, true},
+                {"1.8.1-blah_whatever$wat", 8, 0, 0, 1, true, true},
+                {"1.9.0-ea", 9, 0, 0, 0, true, true},
+                {"11", 11, 0, 0, 0, false, false},
+                {"17", 17, 0, 0, 0, false, false},
+                {"21-ea", 21, 0, 0, 0, true, false},
+                {"17.0.9+9", 17, 0, 9, 0, false, false},
+                {"17.0.9+9-LTS", 17, 0, 9, 0, false, false},
+                {"11.0.2-ea+33", 11, 0, 2, 0, true, false},
+                {"10.0.1.3", 10, 0, 1, 3, false, false},
+        };
+    }
+
+    @Test
+    @Parameters
+    public void parse(String version, int feature, int interim, int update, int patch, boolean preRelease, boolean legacy) {
+        long key = JavaVersionParser.parse(version);
+        assertEquals(feature, JavaVersionParser.feature(key));
+        assertEquals(interim, JavaVersionParser.interim(key));
+        assertEquals(update, JavaVersionParser.update(key));
+        assertEquals(patch, JavaVersionParser.patch(key));
+        assertEquals(preRelease, JavaVersionParser.isPreRelease(key));
+        assertEquals(legacy, JavaVersionParser.isLegacy(key));
+    }
+
+    @Test
+    public void invalid() {
+        assertEquals(JavaVersionParser.INVALID, JavaVersionParser.parse(""));
+        assertEquals(JavaVersionParser.INVALID, JavaVersionParser.parse("whatever"));
+    }
+
+    @Test
+    public void ordering() {
+        assertTrue(JavaVersionParser.parse("21-ea") < JavaVersionParser.parse("21"));
+        assertTrue(JavaVersionParser.parse("17.0.9") < JavaVersionParser.parse("17.0.10"));
+        assertTrue(JavaVersionParser.parse("1.8.0_66") < JavaVersionParser.parse("1.8.0_110"));
+    }
+
+    @Test
+    public void sameFeatureAndInterim() {
+        assertTrue(JavaVersionParser.sameFeatureAndInterim(JavaVersionParser.parse("17"),
+                                                            JavaVersionParser.parse("17.0.9+9")));
+        assertFalse(JavaVersionParser.sameFeatureAndInterim(JavaVersionParser.parse("11.0.2"),
+                                                             JavaVersionParser.parse("17.0.2")));
+        assertFalse(JavaVersionParser.sameFeatureAndInterim(JavaVersionParser.parse("whatever"),
+                                                             JavaVersionParser.parse("whatever")));
+    }
+}
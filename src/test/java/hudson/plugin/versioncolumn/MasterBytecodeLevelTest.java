@@ -0,0 +1,61 @@
+package hudson.plugin.versioncolumn;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MasterBytecodeLevelTest {
+
+    private static class CountingGetter extends JVMVersionComparator.MasterBytecodeMajorVersionNumberGetter {
+        int calls;
+
+        @Override
+        public int get() {
+            calls++;
+            return JVMConstants.JAVA_8;
+        }
+    }
+
+    @Test
+    public void computedOnlyOnce() {
+        CountingGetter getter = new CountingGetter();
+        MasterBytecodeLevel level = new MasterBytecodeLevel(getter);
+
+        assertEquals(JVMConstants.JAVA_8, level.get());
+        assertEquals(JVMConstants.JAVA_8, level.get());
+        assertEquals(JVMConstants.JAVA_8, level.get());
+
+        assertEquals(1, getter.calls);
+        assertEquals(1, level.getComputationCount());
+        assertEquals(2, level.getCacheHitCount());
+    }
+
+    @Test
+    public void countersAreReported() {
+        MasterBytecodeLevel level = new MasterBytecodeLevel(new CountingGetter());
+        assertEquals("level=0, strategy=unknown, computations=0, cacheHits=0", level.toString());
+
+        level.get();
+        level.get();
+
+        assertEquals("level=52, strategy=unknown, computations=1, cacheHits=1", level.toString());
+    }
+
+    @Test
+    public void winningStrategyIsReported() {
+        MasterBytecodeLevel level = new MasterBytecodeLevel(new CountingGetter() {
+            @Override
+            BytecodeLevelDetector.Detection getLastDetection() {
+                return new BytecodeLevelDetector.Detection(BytecodeLevelDetector.Strategy.JAR, JVMConstants.JAVA_8,
+                                                           "jenkins-core.jar");
+            }
+        });
+
+        level.get();
+        assertEquals("level=52, strategy=JAR, computations=1, cacheHits=0", level.toString());
+
+        level.raise(new BytecodeLevelDetector.Detection(BytecodeLevelDetector.Strategy.PLUGINS, JVMConstants.JAVA_11,
+                                                        "some-plugin"));
+        assertEquals("level=55, strategy=PLUGINS, computations=1, cacheHits=0", level.toString());
+    }
+}
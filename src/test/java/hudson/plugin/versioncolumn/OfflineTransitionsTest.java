@@ -0,0 +1,181 @@
+package hudson.plugin.versioncolumn;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OfflineTransitionsTest {
+
+    private final List<String> offline = new ArrayList<>();
+
+    private OfflineTransitions.Transition transition(final String agent, int executors, Map<String, Integer> labels,
+                                                     final boolean stale) {
+        return new OfflineTransitions.Transition(executors, labels) {
+            @Override
+            boolean isStale() {
+                return stale;
+            }
+
+            @Override
+            void run() {
+                offline.add(agent);
+            }
+        };
+    }
+
+    private static void runAll(List<OfflineTransitions.Transition> due) {
+        for (OfflineTransitions.Transition transition : due) {
+            transition.run();
+        }
+    }
+
+    @Test
+    public void ratePerSecond() {
+        OfflineTransitions transitions = new OfflineTransitions(2, 100, 60000);
+        for (int i = 0; i < 5; i++) {
+            transitions.add("agent-" + i, transition("agent-" + i, 1, Collections.<String, Integer>emptyMap(), false));
+        }
+        runAll(transitions.due(0));
+        assertEquals(2, offline.size());
+        runAll(transitions.due(1000));
+        runAll(transitions.due(2000));
+        assertEquals(5, offline.size());
+        assertEquals("agent-0", offline.get(0));
+        assertEquals("agent-4", offline.get(4));
+        assertEquals(5, transitions.getCompletedCount());
+    }
+
+    @Test
+    public void oneTransitionPerAgent() {
+        OfflineTransitions transitions = new OfflineTransitions(10, 100, 60000);
+        assertTrue(transitions.add("agent", transition("agent", 1, Collections.<String, Integer>emptyMap(), false)));
+        assertFalse(transitions.add("agent", transition("agent", 1, Collections.<String, Integer>emptyMap(), false)));
+        assertTrue(transitions.isPending("agent"));
+        runAll(transitions.due(0));
+        assertEquals(1, offline.size());
+        assertFalse(transitions.isPending("agent"));
+    }
+
+    @Test
+    public void staleTransitionsAreSkipped() {
+        OfflineTransitions transitions = new OfflineTransitions(10, 100, 60000);
+        transitions.add("agent", transition("agent", 1, Collections.<String, Integer>emptyMap(), true));
+        assertTrue(transitions.due(0).isEmpty());
+        assertEquals(1, transitions.getSkippedCount());
+        assertEquals(0, transitions.getPendingCount());
+    }
+
+    @Test
+    public void labelPercentagePerWindow() {
+        OfflineTransitions transitions = new OfflineTransitions(100, 25, 60000);
+        Map<String, Integer> linux = new HashMap<>();
+        linux.put("linux", 8);
+        for (int i = 0; i < 8; i++) {
+            transitions.add("agent-" + i, transition("agent-" + i, 1, linux, false));
+        }
+        runAll(transitions.due(0));
+        assertEquals(2, offline.size());
+        runAll(transitions.due(30000));
+        assertEquals(2, offline.size());
+        runAll(transitions.due(60000));
+        assertEquals(4, offline.size());
+        assertEquals(4, transitions.getPendingCount());
+    }
+
+    @Test
+    public void overlappingExpirationsOnOneLabel() {
+        OfflineTransitions transitions = new OfflineTransitions(100, 100, 60000);
+        Map<String, Integer> linux = new HashMap<>();
+        linux.put("linux", 4);
+        transitions.add("agent-0", transition("agent-0", 1, linux, false));
+        runAll(transitions.due(0));
+        transitions.add("agent-1", transition("agent-1", 0, linux, false));
+        runAll(transitions.due(10000));
+        runAll(transitions.due(60000));
+        runAll(transitions.due(70000));
+        transitions.add("agent-2", transition("agent-2", 1, linux, false));
+        runAll(transitions.due(71000));
+        assertEquals(3, offline.size());
+        assertEquals(0, transitions.getPendingCount());
+    }
+
+    @Test
+    public void firstAgentOfASmallLabelIsNotBlocked() {
+        OfflineTransitions transitions = new OfflineTransitions(100, 10, 60000);
+        Map<String, Integer> windows = new HashMap<>();
+        windows.put("windows", 2);
+        transitions.add("win-1", transition("win-1", 1, windows, false));
+        transitions.add("win-2", transition("win-2", 1, windows, false));
+        runAll(transitions.due(0));
+        assertEquals(Collections.singletonList("win-1"), offline);
+    }
+
+    @Test
+    public void backOnlineReplacesPendingOfflineTransition() {
+        OfflineTransitions transitions = new OfflineTransitions(10, 100, 60000);
+        transitions.add("agent-0", transition("agent-0", 1, Collections.<String, Integer>emptyMap(), false));
+        transitions.add("agent-1", transition("agent-1", 1, Collections.<String, Integer>emptyMap(), false));
+        assertTrue(transitions.add("agent-0", new OfflineTransitions.Transition() {
+            @Override
+            boolean isStale() {
+                return false;
+            }
+
+            @Override
+            void run() {
+                offline.add("online: agent-0");
+            }
+        }));
+        assertFalse(transitions.isPending("agent-0"));
+        runAll(transitions.due(0));
+        assertEquals(2, offline.size());
+        assertEquals("online: agent-0", offline.get(0));
+    }
+
+    @Test
+    public void cancelOnlyDropsTheSameTransition() {
+        OfflineTransitions transitions = new OfflineTransitions(10, 100, 60000);
+        OfflineTransitions.Transition first = transition("agent", 1, Collections.<String, Integer>emptyMap(), false);
+        transitions.add("agent", first);
+        assertFalse(transitions.cancel("agent", transition("agent", 1, Collections.<String, Integer>emptyMap(), false)));
+        assertTrue(transitions.isPending("agent"));
+        assertTrue(transitions.cancel("agent", first));
+        assertFalse(transitions.isPending("agent"));
+        assertFalse(transitions.cancel("agent", first));
+        assertTrue(transitions.due(0).isEmpty());
+        assertTrue(offline.isEmpty());
+    }
+
+    @Test
+    public void backOnlineIgnoresLabelLimits() {
+        OfflineTransitions transitions = new OfflineTransitions(10, 0, 60000);
+        Map<String, Integer> linux = new HashMap<>();
+        linux.put("linux", 2);
+        transitions.add("agent-0", transition("agent-0", 1, linux, false));
+        runAll(transitions.due(0));
+        for (int i = 1; i < 3; i++) {
+            final String agent = "agent-" + i;
+            transitions.add(agent, new OfflineTransitions.Transition() {
+                @Override
+                boolean isStale() {
+                    return false;
+                }
+
+                @Override
+                void run() {
+                    offline.add("online: " + agent);
+                }
+            });
+        }
+        runAll(transitions.due(1000));
+        assertEquals(3, offline.size());
+    }
+}
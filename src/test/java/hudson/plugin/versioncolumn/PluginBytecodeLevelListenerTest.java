@@ -0,0 +1,79 @@
+package hudson.plugin.versioncolumn;
+
+import hudson.PluginWrapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import static hudson.plugin.versioncolumn.PluginBytecodeScannerTest.jar;
+import static hudson.plugin.versioncolumn.PluginBytecodeScannerTest.lib;
+import static hudson.plugin.versioncolumn.PluginBytecodeScannerTest.plugin;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PluginBytecodeLevelListenerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static MasterBytecodeLevel computed(final int level) {
+        MasterBytecodeLevel computed = new MasterBytecodeLevel(new JVMVersionComparator.MasterBytecodeMajorVersionNumberGetter() {
+            @Override
+            public int get() {
+                return level;
+            }
+        });
+        computed.get();
+        return computed;
+    }
+
+    private BytecodeLevelIndex index() {
+        return new BytecodeLevelIndex(new File(folder.getRoot(), BytecodeLevelIndex.FILE_NAME),
+                                      PluginBytecodeScanner.SAMPLE_SIZE);
+    }
+
+    private PluginWrapper pluginCompiledFor(String name, String version, int major) throws IOException {
+        PluginWrapper plugin = plugin(folder, name, version);
+        jar(lib(plugin, name + ".jar"), Collections.singletonMap("p/C.class", major));
+        return plugin;
+    }
+
+    @Test
+    public void newPluginNeedingANewerLevelRaisesIt() throws IOException {
+        MasterBytecodeLevel level = computed(JVMConstants.JAVA_8);
+        VerdictCache.INSTANCE.isCompatible(JVMVersionComparator.ComparisonMode.RUNTIME_GREATER_OR_EQUAL_MASTER_BYTECODE,
+                                           "1.8.0", "1.8.0_144", level);
+        assertTrue(VerdictCache.INSTANCE.size() > 0);
+
+        PluginWrapper plugin = pluginCompiledFor("newer-level", "1.0", JVMConstants.JAVA_11);
+        // Agents are to be checked again
+        assertTrue(PluginBytecodeLevelListener.scanAdded(level, Collections.singletonList(plugin), index()));
+
+        assertEquals(JVMConstants.JAVA_11, level.get());
+        BytecodeLevelDetector.Detection detection = level.getLastDetection();
+        assertEquals(BytecodeLevelDetector.Strategy.PLUGINS, detection.getStrategy());
+        assertEquals(lib(plugin, "newer-level.jar").toString(), detection.getSource());
+        assertEquals(0, VerdictCache.INSTANCE.size());
+    }
+
+    @Test
+    public void scannedPluginsAreSkipped() throws IOException {
+        MasterBytecodeLevel level = computed(JVMConstants.JAVA_8);
+        PluginWrapper plugin = pluginCompiledFor("scanned", "1.0", JVMConstants.JAVA_8);
+        assertFalse(PluginBytecodeLevelListener.scanAdded(level, Collections.singletonList(plugin), index()));
+
+        // Not read again, even though it would now raise the level
+        jar(lib(plugin, "scanned.jar"), Collections.singletonMap("p/C.class", JVMConstants.JAVA_11));
+        assertFalse(PluginBytecodeLevelListener.scanAdded(level, Collections.singletonList(plugin), index()));
+        assertEquals(JVMConstants.JAVA_8, level.get());
+
+        PluginWrapper update = pluginCompiledFor("scanned", "2.0", JVMConstants.JAVA_11);
+        assertTrue(PluginBytecodeLevelListener.scanAdded(level, Collections.singletonList(update), index()));
+        assertEquals(JVMConstants.JAVA_11, level.get());
+    }
+}
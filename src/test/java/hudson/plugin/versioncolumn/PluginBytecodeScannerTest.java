@@ -0,0 +1,132 @@
+package hudson.plugin.versioncolumn;
+
+import hudson.PluginWrapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PluginBytecodeScannerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static byte[] classBytes(int major) {
+        byte[] bytes = new byte[256];
+        byte[] header = {(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe, 0, 0, 0, (byte) major};
+        System.arraycopy(header, 0, bytes, 0, header.length);
+        Arrays.fill(bytes, header.length, bytes.length, (byte) 42);
+        return bytes;
+    }
+
+    /**
+     * Writes a jar holding the given class entries, in that order.
+     */
+    static File jar(File file, Map<String, Integer> classes) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            for (Map.Entry<String, Integer> entry : classes.entrySet()) {
+                out.putNextEntry(new ZipEntry(entry.getKey()));
+                out.write(classBytes(entry.getValue()));
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * @return a plugin exploded below the folder, with an empty {@code WEB-INF/lib}.
+     */
+    static PluginWrapper plugin(TemporaryFolder folder, String name, String version) throws IOException {
+        File exploded = folder.newFolder(name + "-" + version);
+        assertTrue(new File(exploded, "WEB-INF/lib").mkdirs());
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Short-Name", name);
+        manifest.getMainAttributes().putValue("Plugin-Version", version);
+        return new PluginWrapper(null, new File(folder.getRoot(), name + ".jpi"), manifest, exploded.toURI().toURL(),
+                                 PluginBytecodeScannerTest.class.getClassLoader(),
+                                 new File(folder.getRoot(), name + ".jpi.disabled"),
+                                 Collections.<PluginWrapper.Dependency>emptyList(),
+                                 Collections.<PluginWrapper.Dependency>emptyList());
+    }
+
+    static File lib(PluginWrapper plugin, String jarName) {
+        return BytecodeLevelDetector.toPath(plugin.baseResourceURL).resolve("WEB-INF/lib/" + jarName).toFile();
+    }
+
+    private static Map<String, Integer> classes(int count, int major) {
+        Map<String, Integer> classes = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            classes.put("p/C" + i + ".class", major);
+        }
+        return classes;
+    }
+
+    @Test
+    public void highestLevelAmongTheLibrariesOfThePlugins() throws IOException {
+        PluginWrapper first = plugin(folder, "first", "1.0");
+        jar(lib(first, "a.jar"), classes(3, JVMConstants.JAVA_7));
+        File newer = jar(lib(first, "b.jar"), classes(3, JVMConstants.JAVA_11));
+        assertTrue(lib(first, "notes.txt").createNewFile());
+        PluginWrapper second = plugin(folder, "second", "1.0");
+        jar(lib(second, "c.jar"), classes(3, JVMConstants.JAVA_8));
+
+        List<Path> jars = PluginBytecodeScanner.jarsOf(Arrays.asList(first, second));
+        assertEquals(3, jars.size());
+
+        PluginBytecodeScanner.Result result = PluginBytecodeScanner.scan(jars, null);
+        assertEquals(JVMConstants.JAVA_11, result.getMajorVersion());
+        assertEquals(newer.toPath(), result.getJar());
+    }
+
+    @Test
+    public void pluginWithoutLibraries() throws IOException {
+        PluginWrapper plugin = plugin(folder, "empty", "1.0");
+        assertTrue(PluginBytecodeScanner.jarsOf(plugin).isEmpty());
+        assertEquals(0, PluginBytecodeScanner.scan(PluginBytecodeScanner.jarsOf(plugin), null).getMajorVersion());
+    }
+
+    @Test
+    public void skipsMetaInfAndModuleInfo() throws IOException {
+        PluginWrapper plugin = plugin(folder, "multi-release", "1.0");
+        Map<String, Integer> classes = classes(2, JVMConstants.JAVA_8);
+        classes.put("META-INF/versions/11/p/C0.class", JVMConstants.JAVA_11);
+        classes.put("module-info.class", JVMConstants.JAVA_11);
+        jar(lib(plugin, "multi-release.jar"), classes);
+
+        assertEquals(JVMConstants.JAVA_8, PluginBytecodeScanner.scan(PluginBytecodeScanner.jarsOf(plugin), null)
+                                                              .getMajorVersion());
+    }
+
+    @Test
+    public void readsSixteenClassesPerJar() throws IOException {
+        assertEquals(16, PluginBytecodeScanner.SAMPLE_SIZE);
+
+        // Evenly spread over 32 classes, the sample misses every other one
+        Map<String, Integer> classes = classes(32, JVMConstants.JAVA_8);
+        classes.put("p/C1.class", JVMConstants.JAVA_11);
+        File sampled = jar(folder.newFile("sampled.jar"), classes);
+        assertEquals(JVMConstants.JAVA_8, PluginBytecodeScanner.scan(sampled.toPath()));
+
+        classes = classes(16, JVMConstants.JAVA_8);
+        classes.put("p/C1.class", JVMConstants.JAVA_11);
+        File all = jar(folder.newFile("all.jar"), classes);
+        assertEquals(JVMConstants.JAVA_11, PluginBytecodeScanner.scan(all.toPath()));
+    }
+}
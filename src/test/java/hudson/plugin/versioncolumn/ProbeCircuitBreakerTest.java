@@ -0,0 +1,66 @@
+package hudson.plugin.versioncolumn;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProbeCircuitBreakerTest {
+
+    @Test
+    public void opensAfterConsecutiveTimeouts() {
+        ProbeCircuitBreaker breaker = new ProbeCircuitBreaker(3, 1000, 8000);
+        breaker.failure(0);
+        breaker.failure(0);
+        assertEquals(ProbeCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allow(0));
+        breaker.failure(10);
+        assertEquals(ProbeCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allow(500));
+        assertEquals(510, breaker.remaining(500));
+    }
+
+    @Test
+    public void successResetsTheCount() {
+        ProbeCircuitBreaker breaker = new ProbeCircuitBreaker(2, 1000, 8000);
+        breaker.failure(0);
+        breaker.success();
+        breaker.failure(0);
+        assertEquals(ProbeCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void singleHalfOpenProbeAfterBackoff() {
+        ProbeCircuitBreaker breaker = new ProbeCircuitBreaker(1, 1000, 8000);
+        breaker.failure(0);
+        assertTrue(breaker.allow(1000));
+        assertEquals(ProbeCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allow(1001));
+        breaker.success();
+        assertEquals(ProbeCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allow(1002));
+    }
+
+    @Test
+    public void backoffDoublesWhileTheAgentDoesNotAnswer() {
+        ProbeCircuitBreaker breaker = new ProbeCircuitBreaker(1, 1000, 3000);
+        breaker.failure(0);
+        assertTrue(breaker.allow(1000));
+        breaker.failure(1000);
+        assertEquals(ProbeCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2000, breaker.remaining(1000));
+        assertTrue(breaker.allow(3000));
+        breaker.failure(3000);
+        assertEquals(3000, breaker.remaining(3000));
+    }
+
+    @Test
+    public void abandonedHalfOpenProbeIsRetried() {
+        ProbeCircuitBreaker breaker = new ProbeCircuitBreaker(1, 1000, 8000);
+        breaker.failure(0);
+        assertTrue(breaker.allow(1000));
+        assertFalse(breaker.allow(1999));
+        assertTrue(breaker.allow(2000));
+    }
+}
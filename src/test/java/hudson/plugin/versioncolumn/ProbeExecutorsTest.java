@@ -0,0 +1,80 @@
+package hudson.plugin.versioncolumn;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class ProbeExecutorsTest {
+
+    private static final Callable<String> THREAD_NAME = new Callable<String>() {
+        @Override
+        public String call() {
+            return Thread.currentThread().getName();
+        }
+    };
+
+    @Test
+    public void virtualModeRunsProbesOnAnyJava() throws Exception {
+        ProbeScheduler scheduler = ProbeScheduler.create("virtual");
+        assertTrue(scheduler.submit(THREAD_NAME, false).get(10, TimeUnit.SECONDS).startsWith("Agent versions probe #"));
+    }
+
+    @Test
+    public void moreThanConcurrencyProbesInFlightOnVirtualThreads() throws Exception {
+        ExecutorService virtual = ProbeExecutors.virtualThreads();
+        // Before Java 21
+        assumeTrue(virtual != null);
+        virtual.shutdown();
+
+        ProbeScheduler scheduler = ProbeScheduler.create("virtual");
+        assertTrue(scheduler.getConcurrency() > ProbeScheduler.CONCURRENCY);
+        final int probes = ProbeScheduler.CONCURRENCY * 4;
+        final CountDownLatch started = new CountDownLatch(probes);
+        final CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < probes; i++) {
+            futures.add(scheduler.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    started.countDown();
+                    release.await();
+                    return Thread.currentThread().getName();
+                }
+            }, false));
+        }
+        try {
+            assertTrue("all probes should be in flight at once", started.await(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+        for (Future<String> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void platformPoolIsBoundedOnItsOwn() {
+        ExecutorService executor = ProbeExecutors.platformThreads(4);
+        try {
+            assertEquals(4, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(ProbeScheduler.create("platform").getConcurrency() <= ProbeExecutors.PLATFORM_THREADS);
+        if (ProbeExecutors.virtualThreads() == null) {
+            // The fallback does not follow the concurrency of the scheduler, which may be raised for virtual threads
+            assertTrue(ProbeScheduler.create("virtual").getConcurrency() <= ProbeExecutors.PLATFORM_THREADS);
+        }
+    }
+}
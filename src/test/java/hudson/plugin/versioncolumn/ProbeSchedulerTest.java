@@ -0,0 +1,90 @@
+package hudson.plugin.versioncolumn;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ProbeSchedulerTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void boundedConcurrency() throws Exception {
+        ProbeScheduler scheduler = new ProbeScheduler(3, executor);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            final int value = i;
+            futures.add(scheduler.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    int now = running.incrementAndGet();
+                    synchronized (maxRunning) {
+                        maxRunning.set(Math.max(maxRunning.get(), now));
+                    }
+                    Thread.sleep(2);
+                    running.decrementAndGet();
+                    return value;
+                }
+            }, false));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(i, futures.get(i).get(10, TimeUnit.SECONDS).intValue());
+        }
+        assertTrue("max running: " + maxRunning.get(), maxRunning.get() <= 3);
+        assertEquals(0, scheduler.getQueueDepth());
+        assertTrue(scheduler.getMaxQueueDepth() > 0);
+    }
+
+    @Test
+    public void priorityFirstThenFifo() throws Exception {
+        ProbeScheduler scheduler = new ProbeScheduler(1, executor);
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        Future<String> first = scheduler.submit(task("blocking", order, blocker), false);
+        scheduler.submit(task("known-1", order, null), false);
+        scheduler.submit(task("known-2", order, null), false);
+        Future<String> last = scheduler.submit(task("new", order, null), true);
+        assertEquals(3, scheduler.getQueueDepth());
+
+        blocker.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        last.get(10, TimeUnit.SECONDS);
+        while (order.size() < 4) {
+            Thread.sleep(1);
+        }
+        assertEquals("[blocking, new, known-1, known-2]", order.toString());
+    }
+
+    private static Callable<String> task(final String name, final List<String> order, final CountDownLatch blocker) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                if (blocker != null) {
+                    blocker.await();
+                }
+                order.add(name);
+                return name;
+            }
+        };
+    }
+}
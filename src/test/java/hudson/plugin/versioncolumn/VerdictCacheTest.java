@@ -0,0 +1,82 @@
+package hudson.plugin.versioncolumn;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VerdictCacheTest {
+
+    private static JVMVersionComparator.MasterBytecodeMajorVersionNumberGetter level(final int level) {
+        return new JVMVersionComparator.MasterBytecodeMajorVersionNumberGetter() {
+            @Override
+            public int get() {
+                return level;
+            }
+        };
+    }
+
+    @Test
+    public void hitsAndMisses() {
+        VerdictCache cache = new VerdictCache(16);
+        JVMVersionComparator.ComparisonMode mode = JVMVersionComparator.ComparisonMode.RUNTIME_GREATER_OR_EQUAL_MASTER_BYTECODE;
+        assertTrue(cache.isCompatible(mode, "1.8.0", "1.8.0_66", level(JVMConstants.JAVA_8)));
+        assertTrue(cache.isCompatible(mode, "1.8.0", "1.8.0_66", level(JVMConstants.JAVA_8)));
+        assertFalse(cache.isCompatible(mode, "1.8.0", "1.7.0", level(JVMConstants.JAVA_8)));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+
+        // A different master level is a different verdict
+        assertFalse(cache.isCompatible(mode, "1.8.0", "1.8.0_66", level(JVMConstants.JAVA_11)));
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void keyedByMasterVersionOutsideBytecodeModes() {
+        VerdictCache cache = new VerdictCache(16);
+        JVMVersionComparator.ComparisonMode mode = JVMVersionComparator.ComparisonMode.EXACT_MATCH;
+        assertTrue(cache.isCompatible(mode, "1.8.0_66", "1.8.0_66", level(JVMConstants.JAVA_8)));
+        assertFalse(cache.isCompatible(mode, "1.8.0_110", "1.8.0_66", level(JVMConstants.JAVA_8)));
+        assertTrue(cache.isCompatible(JVMVersionComparator.ComparisonMode.MAJOR_MINOR_MATCH, "1.8.0_110", "1.8.0_66",
+                                      level(JVMConstants.JAVA_8)));
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void keyedByAgentBytecodeLevelWhenKnown() {
+        VerdictCache cache = new VerdictCache(16);
+        JVMVersionComparator.ComparisonMode mode = JVMVersionComparator.ComparisonMode.RUNTIME_GREATER_OR_EQUAL_MASTER_BYTECODE;
+        assertTrue(cache.isCompatible(mode, "1.8.0", "11.0.1", JVMConstants.JAVA_11, level(JVMConstants.JAVA_8)));
+        assertTrue(cache.isCompatible(mode, "1.8.0", "11.0.2", JVMConstants.JAVA_11, level(JVMConstants.JAVA_8)));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void bounded() {
+        VerdictCache cache = new VerdictCache(2);
+        JVMVersionComparator.ComparisonMode mode = JVMVersionComparator.ComparisonMode.EXACT_MATCH;
+        cache.isCompatible(mode, "11", "11.0.1", level(JVMConstants.JAVA_8));
+        cache.isCompatible(mode, "11", "11.0.2", level(JVMConstants.JAVA_8));
+        cache.isCompatible(mode, "11", "11.0.3", level(JVMConstants.JAVA_8));
+        assertEquals(2, cache.size());
+
+        // The eldest one was evicted
+        cache.isCompatible(mode, "11", "11.0.3", level(JVMConstants.JAVA_8));
+        assertEquals(1, cache.getHitCount());
+        cache.isCompatible(mode, "11", "11.0.1", level(JVMConstants.JAVA_8));
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void invalidate() {
+        VerdictCache cache = new VerdictCache(16);
+        JVMVersionComparator.ComparisonMode mode = JVMVersionComparator.ComparisonMode.EXACT_MATCH;
+        cache.isCompatible(mode, "11", "11", level(JVMConstants.JAVA_8));
+        cache.invalidate();
+        assertEquals(0, cache.size());
+        cache.isCompatible(mode, "11", "11", level(JVMConstants.JAVA_8));
+        assertEquals(2, cache.getMissCount());
+    }
+}